@@ -15,13 +15,10 @@ import java.nio.file.Paths;
 
 public strictfp class BiomeExporter {
 
-    public static String filename;
-    private static DataOutputStream out;
-
     public static void exportBiome(Path envDir, Path folderPath, String biomeName, Biome biome) throws IOException {
         Files.createDirectories(folderPath.resolve(biomeName));
 
-        filename = folderPath.resolve(biomeName).resolve("Light.scmlighting").toString();
+        String filename = folderPath.resolve(biomeName).resolve("Light.scmlighting").toString();
         FileUtils.serialize(filename, biome.getLightingSettings(), LightingSettings.class);
 
         filename = folderPath.resolve(biomeName).resolve("WaterSettings.scmwtr").toString();
@@ -21,14 +21,19 @@ import static util.Swapper.swap;
 
 public strictfp class SCMapExporter {
 
-    public static File file;
+    private final DataOutputStream out;
 
-    private static DataOutputStream out;
+    private SCMapExporter(DataOutputStream out) {
+        this.out = out;
+    }
 
     public static void exportSCMAP(Path folderPath, String mapName, SCMap map) throws IOException {
-        file = folderPath.resolve(mapName + ".scmap").toFile();
+        File file = folderPath.resolve(mapName + ".scmap").toFile();
         boolean status = file.createNewFile();
-        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        new SCMapExporter(new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))).writeSCMap(map);
+    }
+
+    private void writeSCMap(SCMap map) throws IOException {
 
         DDSHeader previewDDSHeader = new DDSHeader();
         previewDDSHeader.setWidth(256);
@@ -325,66 +330,66 @@ public strictfp class SCMapExporter {
         }
     }
 
-    private static void writeFloat(float f) throws IOException {
+    private void writeFloat(float f) throws IOException {
         out.writeInt(swap(Float.floatToRawIntBits(f)));
     }
 
-    private static void writeInt(int i) throws IOException {
+    private void writeInt(int i) throws IOException {
         out.writeInt(swap(i));
     }
 
-    private static void writeShort(short s) throws IOException {
+    private void writeShort(short s) throws IOException {
         out.writeShort(swap(s));
     }
 
-    private static void writeByte(byte b) throws IOException {
+    private void writeByte(byte b) throws IOException {
         out.writeByte(b);
     }
 
-    private static void writeBytes(byte[] b) throws IOException {
+    private void writeBytes(byte[] b) throws IOException {
         out.write(b);
     }
 
-    private static void writeShorts(short[] s) throws IOException {
+    private void writeShorts(short[] s) throws IOException {
         for (short value : s) {
             writeShort(value);
         }
     }
 
-    private static void writeInts(int[] data) throws IOException {
+    private void writeInts(int[] data) throws IOException {
         for (int i : data) {
             writeInt(i);
         }
     }
 
-    private static void writeStringNull(String s) throws IOException {
+    private void writeStringNull(String s) throws IOException {
         for (int i = 0; i < s.length(); i++) {
             out.writeByte(s.charAt(i));
         }
         out.writeByte(0);
     }
 
-    private static void writeString(String s) throws IOException {
+    private void writeString(String s) throws IOException {
         writeInt(s.length());
         for (int i = 0; i < s.length(); i++) {
             out.writeByte(s.charAt(i));
         }
     }
 
-    private static void writeVector3f(Vector3f v) throws IOException {
+    private void writeVector3f(Vector3f v) throws IOException {
         writeFloat(v.x);
         writeFloat(v.y);
         writeFloat(v.z);
     }
 
-    private static void writeVector4f(Vector4f v) throws IOException {
+    private void writeVector4f(Vector4f v) throws IOException {
         writeFloat(v.x);
         writeFloat(v.y);
         writeFloat(v.z);
         writeFloat(v.w);
     }
 
-    private static void writeVector2f(Vector2f v) throws IOException {
+    private void writeVector2f(Vector2f v) throws IOException {
         writeFloat(v.x);
         writeFloat(v.y);
     }
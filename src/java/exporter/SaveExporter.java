@@ -9,13 +9,19 @@ import java.util.ArrayList;
 
 public strictfp class SaveExporter {
 
-    public static File file;
-    private static DataOutputStream out;
+    private final DataOutputStream out;
+
+    private SaveExporter(DataOutputStream out) {
+        this.out = out;
+    }
 
     public static void exportSave(Path folderPath, String mapName, SCMap map) throws IOException {
-        file = folderPath.resolve(mapName + "_save.lua").toFile();
+        File file = folderPath.resolve(mapName + "_save.lua").toFile();
         boolean status = file.createNewFile();
-        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        new SaveExporter(new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))).writeSave(map);
+    }
+
+    private void writeSave(SCMap map) throws IOException {
         out.writeBytes("Scenario = {\n");
         out.writeBytes("  next_area_id = '1',\n");
         out.writeBytes("  Props = {},\n");
@@ -97,7 +103,7 @@ public strictfp class SaveExporter {
         out.close();
     }
 
-    private static void savePathMarkers(ArrayList<AIMarker> aiMarkers, String type, String color, String graph) throws IOException {
+    private void savePathMarkers(ArrayList<AIMarker> aiMarkers, String type, String color, String graph) throws IOException {
         for (AIMarker aiMarker : aiMarkers) {
             if (aiMarker.getNeighborCount() > 0) {
                 out.writeBytes(String.format("        ['%s'] = {\n", aiMarker.getId()));
@@ -123,7 +129,7 @@ public strictfp class SaveExporter {
         }
     }
 
-    private static void saveAIMarkers(ArrayList<AIMarker> aiMarkers, String type, String color, String prop) throws IOException {
+    private void saveAIMarkers(ArrayList<AIMarker> aiMarkers, String type, String color, String prop) throws IOException {
         for (AIMarker aiMarker : aiMarkers) {
             out.writeBytes("        ['" + aiMarker.getId() + "'] = {\n");
             out.writeBytes("          ['hint'] = BOOLEAN( true ),\n");
@@ -137,7 +143,7 @@ public strictfp class SaveExporter {
         }
     }
 
-    private static void saveArmy(Army army) throws IOException {
+    private void saveArmy(Army army) throws IOException {
         out.writeBytes(String.format("    ['%s'] = {\n", army.getId()));
         out.writeBytes("      personality = '',\n");
         out.writeBytes("      plans = '',\n");
@@ -161,7 +167,7 @@ public strictfp class SaveExporter {
         out.writeBytes("    },\n");
     }
 
-    private static void saveGroup(Group group) throws IOException {
+    private void saveGroup(Group group) throws IOException {
         out.writeBytes(String.format("          ['%s'] = GROUP {\n", group.getId()));
         out.writeBytes("            orders = '',\n");
         out.writeBytes("            platoon = '',\n");
@@ -173,7 +179,7 @@ public strictfp class SaveExporter {
         out.writeBytes("          },\n");
     }
 
-    private static void saveUnit(Unit unit) throws IOException {
+    private void saveUnit(Unit unit) throws IOException {
         out.writeBytes(String.format("              ['%s'] = {\n", unit.getId()));
         out.writeBytes(String.format("	              type = '%s',\n", unit.getType()));
         out.writeBytes("			              orders = '',\n");
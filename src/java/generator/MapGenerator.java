@@ -10,7 +10,8 @@ import lombok.Setter;
 import map.*;
 import util.ArgumentParser;
 import util.FileUtils;
-import util.Pipeline;
+import util.PipelineContext;
+import util.PipelineExecutor;
 import util.Util;
 
 import java.awt.image.BufferedImage;
@@ -26,6 +27,7 @@ import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import static util.ImageUtils.readImage;
 
@@ -51,8 +53,11 @@ public strictfp class MapGenerator {
     public static final float PLATEAU_HEIGHT = 5f;
     public static final float VALLEY_HEIGHT = -3f;
     public static final float HILL_HEIGHT = 3f;
-    public static boolean DEBUG = false;
     //read from cli args
+    private boolean debug = false;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private PipelineExecutor.Mode executorMode = PipelineExecutor.Mode.FORK_JOIN;
+    private PipelineContext.HashMode hashMode = PipelineContext.HashMode.FULL;
     private String pathToFolder = ".";
     private String mapName = "debugMap";
     private long seed = new Random().nextLong();
@@ -129,6 +134,7 @@ public strictfp class MapGenerator {
     private BinaryMask noCivs;
 
     private SymmetrySettings symmetrySettings;
+    private PipelineContext pipeline;
     private boolean hasCivilians;
     private boolean enemyCivilians;
     private float mexMultiplier = 1f;
@@ -136,11 +142,6 @@ public strictfp class MapGenerator {
     public static void main(String[] args) throws IOException {
 
         Locale.setDefault(Locale.US);
-        if (DEBUG) {
-            Path debugDir = Paths.get(".", "debug");
-            FileUtils.deleteRecursiveIfExists(debugDir);
-            Files.createDirectory(debugDir);
-        }
 
         MapGenerator generator = new MapGenerator();
         generator.generationTime = Instant.now().getEpochSecond();
@@ -148,6 +149,13 @@ public strictfp class MapGenerator {
         generator.interpretArguments(args);
         generator.setupSymmetrySettings();
 
+        if (generator.debug) {
+            VisualDebugger.ENABLED = true;
+            Path debugDir = Paths.get(".", "debug");
+            FileUtils.deleteRecursiveIfExists(debugDir);
+            Files.createDirectory(debugDir);
+        }
+
         System.out.println("Generating map " + generator.mapName.replace('/', '^'));
         generator.generate();
         generator.save();
@@ -219,18 +227,33 @@ public strictfp class MapGenerator {
                     "--biome arg		    optional, set the biome\n" +
                     "--tournament-style     optional, set map to tournament style which will remove the preview.png and add time of original generation to map\n" +
                     "--blind     optional, set map to tournament style which will remove the preview in the scmap and add time of original generation to map\n" +
+                    "--threads arg          optional, set the number of threads the mask pipeline runs on\n" +
+                    "--executor arg         optional, set how the pipeline runs its work (FORK_JOIN, FIXED, VIRTUAL)\n" +
+                    "--hash-mode arg        optional, set which pipeline masks are hashed for the determinism check (OFF, SAMPLED, FULL)\n" +
                     "--debug                optional, turn on debugging options");
             System.exit(0);
         }
 
         if (arguments.containsKey("debug")) {
-            DEBUG = true;
+            debug = true;
         }
 
         if (arguments.containsKey("folder-path")) {
             pathToFolder = arguments.get("folder-path");
         }
 
+        if (arguments.containsKey("threads")) {
+            threads = Integer.parseInt(arguments.get("threads"));
+        }
+
+        if (arguments.containsKey("executor")) {
+            executorMode = PipelineExecutor.Mode.valueOf(arguments.get("executor").toUpperCase());
+        }
+
+        if (arguments.containsKey("hash-mode")) {
+            hashMode = PipelineContext.HashMode.valueOf(arguments.get("hash-mode").toUpperCase());
+        }
+
         if (arguments.containsKey("map-name")) {
             mapName = arguments.get("map-name");
             parseMapName();
@@ -514,7 +537,7 @@ public strictfp class MapGenerator {
             startTime = System.currentTimeMillis();
             Files.createDirectory(folderPath.resolve(mapName).resolve("debug"));
             SCMapExporter.exportSCMapString(folderPath, mapName, map);
-            Pipeline.toFile(folderPath.resolve(mapName).resolve("debug").resolve("pipelineMaskHashes.txt"));
+            pipeline.toFile(folderPath.resolve(mapName).resolve("debug").resolve("pipelineMaskHashes.txt"));
             toFile(folderPath.resolve(mapName).resolve("debug").resolve("generatorParams.txt"));
             System.out.printf("Debug export done: %d ms\n", System.currentTimeMillis() - startTime);
 
@@ -524,8 +547,20 @@ public strictfp class MapGenerator {
         }
     }
 
+    /**
+     * Generates the map on an executor of its own, built from the current thread count and executor mode and shut down
+     * once the map is done
+     */
     public SCMap generate() throws IOException {
+        try (PipelineExecutor executor = PipelineExecutor.create(executorMode, threads)) {
+            return generate(executor);
+        }
+    }
+
+    private SCMap generate(PipelineExecutor executor) throws IOException {
         long startTime = System.currentTimeMillis();
+        pipeline = new PipelineContext(debug, executor, hashMode);
+        Executor orchestration = pipeline.getOrchestrationExecutor();
 
         final int spawnSize = 32;
         final int hydroCount = spawnCount >= 4 ? spawnCount + random.nextInt(spawnCount / 4) * 2 : spawnCount;
@@ -554,8 +589,8 @@ public strictfp class MapGenerator {
         };
 
         BinaryMask[] spawnMasks = spawnGenerator.generateSpawns(spawnSeparation, symmetrySettings, (plateauDensity - PLATEAU_DENSITY_MIN) / PLATEAU_DENSITY_RANGE);
-        spawnLandMask = new ConcurrentBinaryMask(spawnMasks[0], random.nextLong(), "spawnsLand");
-        spawnPlateauMask = new ConcurrentBinaryMask(spawnMasks[1], random.nextLong(), "spawnsPlateau");
+        spawnLandMask = new ConcurrentBinaryMask(spawnMasks[0], random.nextLong(), "spawnsLand", pipeline);
+        spawnPlateauMask = new ConcurrentBinaryMask(spawnMasks[1], random.nextLong(), "spawnsPlateau", pipeline);
 
         setupTerrainPipeline();
         setupHeightmapPipeline();
@@ -565,83 +600,83 @@ public strictfp class MapGenerator {
         setupResourcePipeline();
 
         random = null;
-        Pipeline.start();
+        pipeline.start();
 
         CompletableFuture<Void> aiMarkerFuture = CompletableFuture.runAsync(() -> {
-            Pipeline.await(passable, passableLand, passableWater);
+            pipeline.await(passable, passableLand, passableWater);
             long sTime = System.currentTimeMillis();
-            CompletableFuture<Void> AmphibiousMarkers = CompletableFuture.runAsync(() -> aiMarkerGenerator.generateAIMarkers(passable.getFinalMask(), map.getAmphibiousAIMarkers(), "AmphPN%d"));
-            CompletableFuture<Void> LandMarkers = CompletableFuture.runAsync(() -> aiMarkerGenerator.generateAIMarkers(passableLand.getFinalMask(), map.getLandAIMarkers(), "LandPN%d"));
-            CompletableFuture<Void> NavyMarkers = CompletableFuture.runAsync(() -> aiMarkerGenerator.generateAIMarkers(passableWater.getFinalMask(), map.getNavyAIMarkers(), "NavyPN%d"));
-            CompletableFuture<Void> AirMarkers = CompletableFuture.runAsync(aiMarkerGenerator::generateAirAIMarkers);
+            CompletableFuture<Void> AmphibiousMarkers = CompletableFuture.runAsync(() -> aiMarkerGenerator.generateAIMarkers(passable.getFinalMask(), map.getAmphibiousAIMarkers(), "AmphPN%d"), pipeline.getTaskExecutor());
+            CompletableFuture<Void> LandMarkers = CompletableFuture.runAsync(() -> aiMarkerGenerator.generateAIMarkers(passableLand.getFinalMask(), map.getLandAIMarkers(), "LandPN%d"), pipeline.getTaskExecutor());
+            CompletableFuture<Void> NavyMarkers = CompletableFuture.runAsync(() -> aiMarkerGenerator.generateAIMarkers(passableWater.getFinalMask(), map.getNavyAIMarkers(), "NavyPN%d"), pipeline.getTaskExecutor());
+            CompletableFuture<Void> AirMarkers = CompletableFuture.runAsync(aiMarkerGenerator::generateAirAIMarkers, pipeline.getTaskExecutor());
             AmphibiousMarkers.join();
             LandMarkers.join();
             NavyMarkers.join();
             AirMarkers.join();
-            if (DEBUG) {
+            if (debug) {
                 System.out.printf("Done: %4d ms, %s, generateAIMarkers\n",
                         System.currentTimeMillis() - sTime,
                         Util.getStackTraceLineInClass(MapGenerator.class));
             }
-        });
+        }, orchestration);
 
 
         CompletableFuture<Void> textureFuture = CompletableFuture.runAsync(() -> {
-            Pipeline.await(accentGroundTexture, accentPlateauTexture, slopesTexture, accentSlopesTexture, steepHillsTexture, waterBeachTexture, rockTexture, accentRockTexture);
+            pipeline.await(accentGroundTexture, accentPlateauTexture, slopesTexture, accentSlopesTexture, steepHillsTexture, waterBeachTexture, rockTexture, accentRockTexture);
             long sTime = System.currentTimeMillis();
             map.setTextureMasksLowScaled(accentGroundTexture.getFinalMask(), accentPlateauTexture.getFinalMask(), slopesTexture.getFinalMask(), accentSlopesTexture.getFinalMask());
             map.setTextureMasksHighScaled(steepHillsTexture.getFinalMask(), waterBeachTexture.getFinalMask(), rockTexture.getFinalMask(), accentRockTexture.getFinalMask());
-            if (DEBUG) {
+            if (debug) {
                 System.out.printf("Done: %4d ms, %s, generateTextures\n",
                         System.currentTimeMillis() - sTime,
                         Util.getStackTraceLineInClass(MapGenerator.class));
             }
-        });
+        }, orchestration);
 
         CompletableFuture<Void> resourcesFuture = CompletableFuture.runAsync(() -> {
-            Pipeline.await(resourceMask, plateaus, land, ramps, impassable, unbuildable, allWreckMask, plateauResourceMask, waterResourceMask);
+            pipeline.await(resourceMask, plateaus, land, ramps, impassable, unbuildable, allWreckMask, plateauResourceMask, waterResourceMask);
             long sTime = System.currentTimeMillis();
             mexGenerator.generateMexes(resourceMask.getFinalMask(), waterResourceMask.getFinalMask());
             hydroGenerator.generateHydros(resourceMask.getFinalMask().deflate(4));
             generateExclusionMasks();
-            if (DEBUG) {
+            if (debug) {
                 System.out.printf("Done: %4d ms, %s, generateResources\n",
                         System.currentTimeMillis() - sTime,
                         Util.getStackTraceLineInClass(MapGenerator.class));
             }
-        });
+        }, orchestration);
 
         resourcesFuture.join();
 
         CompletableFuture<Void> propsFuture = CompletableFuture.runAsync(() -> {
-            Pipeline.await(treeMask, cliffRockMask, largeRockFieldMask, fieldStoneMask);
+            pipeline.await(treeMask, cliffRockMask, largeRockFieldMask, fieldStoneMask);
             long sTime = System.currentTimeMillis();
             propGenerator.generateProps(treeMask.getFinalMask().minus(noProps), biome.getPropMaterials().getTreeGroups(), 5f);
             propGenerator.generateProps(cliffRockMask.getFinalMask().minus(noProps), biome.getPropMaterials().getRocks(), 2.5f);
             propGenerator.generateProps(largeRockFieldMask.getFinalMask().minus(noProps.copy().inflate(16)), biome.getPropMaterials().getRocks(), 1.5f);
             propGenerator.generateProps(smallRockFieldMask.getFinalMask().minus(noProps.copy().inflate(16)), biome.getPropMaterials().getRocks(), 1.5f);
             propGenerator.generateProps(fieldStoneMask.getFinalMask().minus(noProps), biome.getPropMaterials().getBoulders(), 30f);
-            if (DEBUG) {
+            if (debug) {
                 System.out.printf("Done: %4d ms, %s, generateProps\n",
                         System.currentTimeMillis() - sTime,
                         Util.getStackTraceLineInClass(MapGenerator.class));
             }
-        });
+        }, orchestration);
 
         CompletableFuture<Void> decalsFuture = CompletableFuture.runAsync(() -> {
-            Pipeline.await(intDecal, rockDecal);
+            pipeline.await(intDecal, rockDecal);
             long sTime = System.currentTimeMillis();
             decalGenerator.generateDecals(intDecal.getFinalMask().minus(noDecals), DecalGenerator.INT, 64f, 18f);
             decalGenerator.generateDecals(rockDecal.getFinalMask().minus(noDecals), DecalGenerator.ROCKS, 32f, 8f);
-            if (DEBUG) {
+            if (debug) {
                 System.out.printf("Done: %4d ms, %s, generateDecals\n",
                         System.currentTimeMillis() - sTime,
                         Util.getStackTraceLineInClass(MapGenerator.class));
             }
-        });
+        }, orchestration);
 
         CompletableFuture<Void> unitsFuture = CompletableFuture.runAsync(() -> {
-            Pipeline.await(baseMask, civReclaimMask, t1LandWreckMask, t2LandWreckMask, t3LandWreckMask, t2NavyWreckMask, navyFactoryWreckMask);
+            pipeline.await(baseMask, civReclaimMask, t1LandWreckMask, t2LandWreckMask, t3LandWreckMask, t2NavyWreckMask, navyFactoryWreckMask);
             long sTime = System.currentTimeMillis();
             Army army17 = new Army("ARMY_17", new ArrayList<>());
             Group army17Initial = new Group("INITIAL", new ArrayList<>());
@@ -660,24 +695,24 @@ public strictfp class MapGenerator {
             unitGenerator.generateUnits(t3LandWreckMask.getFinalMask().minus(noWrecks), UnitGenerator.T3_Land, army17, army17Wreckage, 128f);
             unitGenerator.generateUnits(t2NavyWreckMask.getFinalMask().minus(noWrecks), UnitGenerator.T2_Navy, army17, army17Wreckage, 128f);
             unitGenerator.generateUnits(navyFactoryWreckMask.getFinalMask().minus(noWrecks), UnitGenerator.Navy_Factory, army17, army17Wreckage, 256f);
-            if (DEBUG) {
+            if (debug) {
                 System.out.printf("Done: %4d ms, %s, generateBases\n",
                         System.currentTimeMillis() - sTime,
                         Util.getStackTraceLineInClass(MapGenerator.class));
             }
-        });
+        }, orchestration);
 
         CompletableFuture<Void> heightMapFuture = CompletableFuture.runAsync(() -> {
-            Pipeline.await(heightmapBase);
+            pipeline.await(heightmapBase);
             long sTime = System.currentTimeMillis();
             map.setHeightImage(heightmapBase.getFinalMask());
             map.getHeightmap().getRaster().setPixel(0, 0, new int[]{0});
-            if (DEBUG) {
+            if (debug) {
                 System.out.printf("Done: %4d ms, %s, setHeightmap\n",
                         System.currentTimeMillis() - sTime,
                         Util.getStackTraceLineInClass(MapGenerator.class));
             }
-        });
+        }, orchestration);
 
         propsFuture.join();
         decalsFuture.join();
@@ -694,16 +729,16 @@ public strictfp class MapGenerator {
             decalGenerator.setDecalHeights();
             unitGenerator.setUnitHeights();
             aiMarkerGenerator.setMarkerHeights();
-            if (DEBUG) {
+            if (debug) {
                 System.out.printf("Done: %4d ms, %s, setPlacements\n",
                         System.currentTimeMillis() - sTime,
                         Util.getStackTraceLineInClass(MapGenerator.class));
             }
-        });
+        }, orchestration);
 
         textureFuture.join();
         placementFuture.join();
-        Pipeline.stop();
+        pipeline.stop();
         long sTime = System.currentTimeMillis();
         map.setGeneratePreview(!blind);
         if (!blind) {
@@ -717,7 +752,7 @@ public strictfp class MapGenerator {
                     DateTimeFormatter.ofPattern("HH:mm:ss dd MMM uuuu")
                             .format(Instant.ofEpochSecond(generationTime).atZone(ZoneOffset.UTC))));
         }
-        if (DEBUG) {
+        if (debug) {
             System.out.printf("Done: %4d ms, %s, generatePreview\n",
                     System.currentTimeMillis() - sTime,
                     Util.getStackTraceLineInClass(MapGenerator.class));
@@ -729,11 +764,11 @@ public strictfp class MapGenerator {
     }
 
     private void setupTerrainPipeline() {
-        land = new ConcurrentBinaryMask(mapSize / 16, random.nextLong(), symmetrySettings, "land");
-        mountains = new ConcurrentBinaryMask(mapSize / 4, random.nextLong(), symmetrySettings, "mountains");
-        plateaus = new ConcurrentBinaryMask(mapSize / 16, random.nextLong(), symmetrySettings, "plateaus");
-        ramps = new ConcurrentBinaryMask(mapSize + 1, random.nextLong(), symmetrySettings, "ramps");
-        ConcurrentBinaryMask spawnRamps = new ConcurrentBinaryMask(mapSize + 1, random.nextLong(), symmetrySettings, "spawnRamps");
+        land = new ConcurrentBinaryMask(mapSize / 16, random.nextLong(), symmetrySettings, "land", pipeline);
+        mountains = new ConcurrentBinaryMask(mapSize / 4, random.nextLong(), symmetrySettings, "mountains", pipeline);
+        plateaus = new ConcurrentBinaryMask(mapSize / 16, random.nextLong(), symmetrySettings, "plateaus", pipeline);
+        ramps = new ConcurrentBinaryMask(mapSize + 1, random.nextLong(), symmetrySettings, "ramps", pipeline);
+        ConcurrentBinaryMask spawnRamps = new ConcurrentBinaryMask(mapSize + 1, random.nextLong(), symmetrySettings, "spawnRamps", pipeline);
 
         land.randomize(landDensity).smooth(2, .75f);
 
@@ -830,22 +865,22 @@ public strictfp class MapGenerator {
 
         plateaus.combine(cliffs);
 
-        hills = new ConcurrentBinaryMask(mapSize / 4, random.nextLong(), symmetrySettings, "hills");
-        valleys = new ConcurrentBinaryMask(mapSize / 4, random.nextLong(), symmetrySettings, "valleys");
+        hills = new ConcurrentBinaryMask(mapSize / 4, random.nextLong(), symmetrySettings, "hills", pipeline);
+        valleys = new ConcurrentBinaryMask(mapSize / 4, random.nextLong(), symmetrySettings, "valleys", pipeline);
 
         hills.randomWalk(random.nextInt(5) + 3, random.nextInt(500) + 350).setSize(mapSize + 1).smooth(10, .25f).intersect(land.copy().deflate(8)).minus(plateaus).minus(ramps).minus(spawnLandMask);
         valleys.randomWalk(random.nextInt(5) + 3, random.nextInt(500) + 350).setSize(mapSize + 1).smooth(10, .25f).intersect(plateaus.copy().deflate(4)).minus(ramps).minus(spawnPlateauMask);
     }
 
     private void setupHeightmapPipeline() {
-        heightmapBase = new ConcurrentFloatMask(mapSize + 1, random.nextLong(), symmetrySettings, "heightmapBase");
-        ConcurrentFloatMask heightmapLand = new ConcurrentFloatMask(mapSize + 1, random.nextLong(), symmetrySettings, "heightmapLand");
-        ConcurrentFloatMask heightmapMountains = new ConcurrentFloatMask(mapSize + 1, random.nextLong(), symmetrySettings, "heightmapMountains");
-        ConcurrentFloatMask heightmapPlateaus = new ConcurrentFloatMask(mapSize + 1, random.nextLong(), symmetrySettings, "heightmapPlateaus");
-        ConcurrentFloatMask heightmapCliffs = new ConcurrentFloatMask(mapSize + 1, random.nextLong(), symmetrySettings, "heightmapCliffs");
-        ConcurrentFloatMask heightmapShore = new ConcurrentFloatMask(mapSize + 1, random.nextLong(), symmetrySettings, "heightmapShore");
-        ConcurrentFloatMask heightmapHills = new ConcurrentFloatMask(mapSize + 1, random.nextLong(), symmetrySettings, "heightmapHills");
-        ConcurrentFloatMask heightmapValleys = new ConcurrentFloatMask(mapSize + 1, random.nextLong(), symmetrySettings, "heightmapValleys");
+        heightmapBase = new ConcurrentFloatMask(mapSize + 1, random.nextLong(), symmetrySettings, "heightmapBase", pipeline);
+        ConcurrentFloatMask heightmapLand = new ConcurrentFloatMask(mapSize + 1, random.nextLong(), symmetrySettings, "heightmapLand", pipeline);
+        ConcurrentFloatMask heightmapMountains = new ConcurrentFloatMask(mapSize + 1, random.nextLong(), symmetrySettings, "heightmapMountains", pipeline);
+        ConcurrentFloatMask heightmapPlateaus = new ConcurrentFloatMask(mapSize + 1, random.nextLong(), symmetrySettings, "heightmapPlateaus", pipeline);
+        ConcurrentFloatMask heightmapCliffs = new ConcurrentFloatMask(mapSize + 1, random.nextLong(), symmetrySettings, "heightmapCliffs", pipeline);
+        ConcurrentFloatMask heightmapShore = new ConcurrentFloatMask(mapSize + 1, random.nextLong(), symmetrySettings, "heightmapShore", pipeline);
+        ConcurrentFloatMask heightmapHills = new ConcurrentFloatMask(mapSize + 1, random.nextLong(), symmetrySettings, "heightmapHills", pipeline);
+        ConcurrentFloatMask heightmapValleys = new ConcurrentFloatMask(mapSize + 1, random.nextLong(), symmetrySettings, "heightmapValleys", pipeline);
         ConcurrentBinaryMask oceanFloor = land.copy().invert();
 
         oceanFloor.acid(.01f, 1).erode(.75f, symmetrySettings.getSpawnSymmetry(), 2).smooth(32, .75f).invert().removeAreasSmallerThan(128);
@@ -854,21 +889,22 @@ public strictfp class MapGenerator {
         heightmapPlateaus.init(plateaus, 0, PLATEAU_HEIGHT).smooth(10, ramps);
         heightmapHills.init(hills, 0, HILL_HEIGHT).smooth(16, land.copy().minus(plateaus));
         heightmapValleys.init(valleys, 0, VALLEY_HEIGHT).smooth(16, plateaus);
-        heightmapLand.add(heightmapHills).add(heightmapValleys).maskToOceanHeights(0.35f, land).clampMin(biome.getWaterSettings().getElevationAbyss() - waterHeight + 1f).maskToOceanHeights(0.15f, oceanFloor).clampMin(biome.getWaterSettings().getElevationAbyss() - waterHeight - 1f);
+        heightmapLand.lazy().add(heightmapHills).add(heightmapValleys).evaluate().maskToOceanHeights(0.35f, land).clampMin(biome.getWaterSettings().getElevationAbyss() - waterHeight + 1f).maskToOceanHeights(0.15f, oceanFloor).clampMin(biome.getWaterSettings().getElevationAbyss() - waterHeight - 1f);
         heightmapCliffs.init(cliffs, 0, 1f).maskToMountains(cliffs);
         heightmapShore.init(shore, 0, 1.5f).maskToMountains(shore);
-        heightmapMountains.maskToMountains(mountains).add(heightmapCliffs).add(heightmapShore);
+        heightmapMountains.maskToMountains(mountains).lazy().add(heightmapCliffs).add(heightmapShore).evaluate();
 
         ConcurrentBinaryMask mountainsPresent = new ConcurrentBinaryMask(heightmapMountains, 3f, random.nextLong(), "mountainsPresent");
 
-        heightmapMountains.add(mountainsPresent.copy().minus(plateaus), PLATEAU_HEIGHT).subtract(mountainsPresent.copy().invert(), 10f).clampMin(0);
+        heightmapMountains.lazy().add(mountainsPresent.copy().minus(plateaus), PLATEAU_HEIGHT).subtract(mountainsPresent.copy().invert(), 10f).clampMin(0).evaluate();
 
-        heightmapBase.add(heightmapMountains).add(heightmapLand).add(heightmapPlateaus).smooth(1);
+        heightmapBase.lazy().add(heightmapMountains).add(heightmapLand).add(heightmapPlateaus).evaluate().smooth(1);
         slope = heightmapBase.copy().gradient();
 
-        impassable = new ConcurrentBinaryMask(slope, 1f, random.nextLong(), "impassable");
-        unbuildable = new ConcurrentBinaryMask(slope, .5f, random.nextLong(), "unbuildable");
-        ConcurrentBinaryMask notFlat = new ConcurrentBinaryMask(slope, .1f, random.nextLong(), "notFlat");
+        ConcurrentBinaryMask[] slopeBands = slope.band(new float[]{1f, .5f, .1f}, nextSeeds(3), new String[]{"impassable", "unbuildable", "notFlat"});
+        impassable = slopeBands[0];
+        unbuildable = slopeBands[1];
+        ConcurrentBinaryMask notFlat = slopeBands[2];
 
         unbuildable.combine(ramps.copy().intersect(notFlat));
         impassable.inflate(2);
@@ -882,6 +918,14 @@ public strictfp class MapGenerator {
         passableWater.deflate(16).fillEdge(8, false);
     }
 
+    private long[] nextSeeds(int count) {
+        long[] seeds = new long[count];
+        for (int i = 0; i < count; i++) {
+            seeds[i] = random.nextLong();
+        }
+        return seeds;
+    }
+
     private void setupResourcePipeline() {
         resourceMask = new ConcurrentBinaryMask(land, random.nextLong(), "resource");
         waterResourceMask = new ConcurrentBinaryMask(land, random.nextLong(), "waterResource").invert();
@@ -894,32 +938,38 @@ public strictfp class MapGenerator {
     }
 
     private void setupTexturePipeline() {
-        ConcurrentBinaryMask flat = new ConcurrentBinaryMask(slope, .05f, random.nextLong(), "flat").invert();
+        long flatSeed = random.nextLong();
         ConcurrentBinaryMask inland = new ConcurrentBinaryMask(land, random.nextLong(), "inland");
-        ConcurrentBinaryMask highGround = new ConcurrentBinaryMask(heightmapBase, waterHeight + 3f, random.nextLong(), "highGround");
-        ConcurrentBinaryMask aboveBeach = new ConcurrentBinaryMask(heightmapBase, waterHeight + 1.5f, random.nextLong(), "aboveBeach");
-        ConcurrentBinaryMask aboveBeachEdge = new ConcurrentBinaryMask(heightmapBase, waterHeight + 3f, random.nextLong(), "aboveBeachEdge");
-        ConcurrentBinaryMask flatAboveCoast = new ConcurrentBinaryMask(heightmapBase, waterHeight + 0.29f, random.nextLong(), "flatAboveCoast");
-        ConcurrentBinaryMask higherFlatAboveCoast = new ConcurrentBinaryMask(heightmapBase, waterHeight + 1.2f, random.nextLong(), "higherFlatAboveCoast");
-        ConcurrentBinaryMask lowWaterBeach = new ConcurrentBinaryMask(heightmapBase, waterHeight, random.nextLong(), "lowWaterBeach");
-        ConcurrentBinaryMask waterBeach = new ConcurrentBinaryMask(heightmapBase, waterHeight + 1f, random.nextLong(), "waterBeach");
+        ConcurrentBinaryMask[] heightBands = heightmapBase.band(new float[]{waterHeight + 3f, waterHeight + 1.5f, waterHeight + 3f, waterHeight + 0.29f, waterHeight + 1.2f, waterHeight, waterHeight + 1f},
+                nextSeeds(7), new String[]{"highGround", "aboveBeach", "aboveBeachEdge", "flatAboveCoast", "higherFlatAboveCoast", "lowWaterBeach", "waterBeach"});
+        ConcurrentBinaryMask highGround = heightBands[0];
+        ConcurrentBinaryMask aboveBeach = heightBands[1];
+        ConcurrentBinaryMask aboveBeachEdge = heightBands[2];
+        ConcurrentBinaryMask flatAboveCoast = heightBands[3];
+        ConcurrentBinaryMask higherFlatAboveCoast = heightBands[4];
+        ConcurrentBinaryMask lowWaterBeach = heightBands[5];
+        ConcurrentBinaryMask waterBeach = heightBands[6];
         ConcurrentBinaryMask accentGround = new ConcurrentBinaryMask(land, random.nextLong(), "accentGround");
         ConcurrentBinaryMask accentPlateau = new ConcurrentBinaryMask(plateaus, random.nextLong(), "accentPlateau");
-        ConcurrentBinaryMask slopes = new ConcurrentBinaryMask(slope, .1f, random.nextLong(), "slopes");
-        ConcurrentBinaryMask accentSlopes = new ConcurrentBinaryMask(slope, .75f, random.nextLong(), "accentSlopes").invert();
-        ConcurrentBinaryMask steepHills = new ConcurrentBinaryMask(slope, .55f, random.nextLong(), "steepHills");
-        ConcurrentBinaryMask rock = new ConcurrentBinaryMask(slope, 1.25f, random.nextLong(), "rock");
-        ConcurrentBinaryMask accentRock = new ConcurrentBinaryMask(slope, 1.25f, random.nextLong(), "accentRock");
+        long[] slopeSeeds = {flatSeed, random.nextLong(), random.nextLong(), random.nextLong(), random.nextLong(), random.nextLong()};
+        ConcurrentBinaryMask[] slopeBands = slope.band(new float[]{.05f, .1f, .75f, .55f, 1.25f, 1.25f}, slopeSeeds,
+                new String[]{"flat", "slopes", "accentSlopes", "steepHills", "rock", "accentRock"});
+        ConcurrentBinaryMask flat = slopeBands[0].invert();
+        ConcurrentBinaryMask slopes = slopeBands[1];
+        ConcurrentBinaryMask accentSlopes = slopeBands[2].invert();
+        ConcurrentBinaryMask steepHills = slopeBands[3];
+        ConcurrentBinaryMask rock = slopeBands[4];
+        ConcurrentBinaryMask accentRock = slopeBands[5];
         intDecal = new ConcurrentBinaryMask(land, random.nextLong(), "intDecal");
         rockDecal = new ConcurrentBinaryMask(mountains, random.nextLong(), "rockDecal");
-        waterBeachTexture = new ConcurrentFloatMask(mapSize + 1, random.nextLong(), symmetrySettings, "waterBeachTexture");
-        accentGroundTexture = new ConcurrentFloatMask(mapSize + 1, random.nextLong(), symmetrySettings, "accentGroundTexture");
-        accentPlateauTexture = new ConcurrentFloatMask(mapSize + 1, random.nextLong(), symmetrySettings, "accentPlateauTexture");
-        slopesTexture = new ConcurrentFloatMask(mapSize + 1, random.nextLong(), symmetrySettings, "slopesTexture");
-        accentSlopesTexture = new ConcurrentFloatMask(mapSize + 1, random.nextLong(), symmetrySettings, "accentSlopesTexture");
-        steepHillsTexture = new ConcurrentFloatMask(mapSize + 1, random.nextLong(), symmetrySettings, "steepHillsTexture");
-        rockTexture = new ConcurrentFloatMask(mapSize + 1, random.nextLong(), symmetrySettings, "rockTexture");
-        accentRockTexture = new ConcurrentFloatMask(mapSize + 1, random.nextLong(), symmetrySettings, "accentRockTexture");
+        waterBeachTexture = new ConcurrentFloatMask(mapSize + 1, random.nextLong(), symmetrySettings, "waterBeachTexture", pipeline);
+        accentGroundTexture = new ConcurrentFloatMask(mapSize + 1, random.nextLong(), symmetrySettings, "accentGroundTexture", pipeline);
+        accentPlateauTexture = new ConcurrentFloatMask(mapSize + 1, random.nextLong(), symmetrySettings, "accentPlateauTexture", pipeline);
+        slopesTexture = new ConcurrentFloatMask(mapSize + 1, random.nextLong(), symmetrySettings, "slopesTexture", pipeline);
+        accentSlopesTexture = new ConcurrentFloatMask(mapSize + 1, random.nextLong(), symmetrySettings, "accentSlopesTexture", pipeline);
+        steepHillsTexture = new ConcurrentFloatMask(mapSize + 1, random.nextLong(), symmetrySettings, "steepHillsTexture", pipeline);
+        rockTexture = new ConcurrentFloatMask(mapSize + 1, random.nextLong(), symmetrySettings, "rockTexture", pipeline);
+        accentRockTexture = new ConcurrentFloatMask(mapSize + 1, random.nextLong(), symmetrySettings, "accentRockTexture", pipeline);
 
         inland.deflate(2);
         flatAboveCoast.intersect(flat);
@@ -933,29 +983,29 @@ public strictfp class MapGenerator {
         steepHills.acid(.3f, 0).erode(.2f, symmetrySettings.getSpawnSymmetry());
         accentRock.acid(.2f, 0).erode(.3f, symmetrySettings.getSpawnSymmetry()).acid(.2f, 0).smooth(2, .5f).intersect(rock);
 
-        waterBeachTexture.init(waterBeach, 0, 1).subtract(rock, 1f).subtract(aboveBeachEdge, 1f).clampMin(0).smooth(2, rock.copy().invert()).add(waterBeach, 1f).subtract(rock, 1f);
-        waterBeachTexture.subtract(aboveBeachEdge, .9f).clampMin(0).smooth(2, rock.copy().invert()).subtract(rock, 1f).subtract(aboveBeachEdge, .8f).clampMin(0).add(waterBeach, .65f).smooth(2, rock.copy().invert());
-        waterBeachTexture.subtract(rock, 1f).subtract(aboveBeachEdge, 0.7f).clampMin(0).add(waterBeach, .5f).smooth(2, rock.copy().invert()).smooth(2, rock.copy().invert()).subtract(rock, 1f).clampMin(0).smooth(2, rock.copy().invert());
-        waterBeachTexture.smooth(2, rock.copy().invert()).subtract(rock, 1f).clampMin(0).smooth(2, rock.copy().invert()).smooth(1, rock.copy().invert()).smooth(1, rock.copy().invert()).clampMax(1f).threshold(.1f).smooth(2);
-        accentGroundTexture.init(accentGround, 0, 1).smooth(16).add(accentGround, .65f).smooth(8).add(accentGround, .5f).smooth(2).clampMax(1f).threshold(.1f).smooth(2);
-        accentPlateauTexture.init(accentPlateau, 0, 1).smooth(16).add(accentPlateau, .65f).smooth(8).add(accentPlateau, .5f).smooth(2).clampMax(1f).threshold(.1f).smooth(2);
-        slopesTexture.init(slopes, 0, 1).smooth(32).add(slopes, .65f).smooth(16).add(slopes, .5f).smooth(4).clampMax(1f).threshold(.05f).smooth(2);
-        accentSlopesTexture.init(accentSlopes, 0, 1).smooth(16).add(accentSlopes, .65f).smooth(8).add(accentSlopes, .5f).smooth(2).clampMax(1f).threshold(.05f).smooth(2);
-        steepHillsTexture.init(steepHills, 0, 1).smooth(8).clampMax(0.35f).add(steepHills, .65f).smooth(4).clampMax(0.65f).add(steepHills, .5f).smooth(1).clampMax(1f).threshold(.1f).smooth(2);
-        rockTexture.init(rock, 0, 1).smooth(8).clampMax(0.2f).add(rock, .65f).smooth(4).clampMax(0.3f).add(rock, .5f).smooth(1).add(rock, 1f).clampMax(1f).threshold(.1f).smooth(2);
-        accentRockTexture.init(accentRock, 0, 1).subtract(waterBeachTexture).clampMin(0).smooth(8).add(accentRock, .65f).smooth(4).add(accentRock, .5f).smooth(1).clampMax(1f).threshold(.1f).smooth(2);
+        waterBeachTexture.init(waterBeach, 0, 1).lazy().subtract(rock, 1f).subtract(aboveBeachEdge, 1f).clampMin(0).evaluate().smooth(2, rock.copy().invert()).lazy().add(waterBeach, 1f).subtract(rock, 1f).evaluate();
+        waterBeachTexture.lazy().subtract(aboveBeachEdge, .9f).clampMin(0).evaluate().smooth(2, rock.copy().invert()).lazy().subtract(rock, 1f).subtract(aboveBeachEdge, .8f).clampMin(0).add(waterBeach, .65f).evaluate().smooth(2, rock.copy().invert());
+        waterBeachTexture.lazy().subtract(rock, 1f).subtract(aboveBeachEdge, 0.7f).clampMin(0).add(waterBeach, .5f).evaluate().smooth(2, rock.copy().invert()).smooth(2, rock.copy().invert()).lazy().subtract(rock, 1f).clampMin(0).evaluate().smooth(2, rock.copy().invert());
+        waterBeachTexture.smooth(2, rock.copy().invert()).lazy().subtract(rock, 1f).clampMin(0).evaluate().smooth(2, rock.copy().invert()).smooth(1, rock.copy().invert()).smooth(1, rock.copy().invert()).lazy().clampMax(1f).threshold(.1f).evaluate().smooth(2);
+        accentGroundTexture.init(accentGround, 0, 1).smooth(16).add(accentGround, .65f).smooth(8).add(accentGround, .5f).smooth(2).lazy().clampMax(1f).threshold(.1f).evaluate().smooth(2);
+        accentPlateauTexture.init(accentPlateau, 0, 1).smooth(16).add(accentPlateau, .65f).smooth(8).add(accentPlateau, .5f).smooth(2).lazy().clampMax(1f).threshold(.1f).evaluate().smooth(2);
+        slopesTexture.init(slopes, 0, 1).smooth(32).add(slopes, .65f).smooth(16).add(slopes, .5f).smooth(4).lazy().clampMax(1f).threshold(.05f).evaluate().smooth(2);
+        accentSlopesTexture.init(accentSlopes, 0, 1).smooth(16).add(accentSlopes, .65f).smooth(8).add(accentSlopes, .5f).smooth(2).lazy().clampMax(1f).threshold(.05f).evaluate().smooth(2);
+        steepHillsTexture.init(steepHills, 0, 1).smooth(8).lazy().clampMax(0.35f).add(steepHills, .65f).evaluate().smooth(4).lazy().clampMax(0.65f).add(steepHills, .5f).evaluate().smooth(1).lazy().clampMax(1f).threshold(.1f).evaluate().smooth(2);
+        rockTexture.init(rock, 0, 1).smooth(8).lazy().clampMax(0.2f).add(rock, .65f).evaluate().smooth(4).lazy().clampMax(0.3f).add(rock, .5f).evaluate().smooth(1).lazy().add(rock, 1f).clampMax(1f).threshold(.1f).evaluate().smooth(2);
+        accentRockTexture.init(accentRock, 0, 1).lazy().subtract(waterBeachTexture).clampMin(0).evaluate().smooth(8).add(accentRock, .65f).smooth(4).add(accentRock, .5f).smooth(1).lazy().clampMax(1f).threshold(.1f).evaluate().smooth(2);
 
     }
 
     private void setupPropPipeline() {
-        baseMask = new ConcurrentBinaryMask(mapSize / 4, random.nextLong(), symmetrySettings, "base");
-        civReclaimMask = new ConcurrentBinaryMask(mapSize / 4, random.nextLong(), symmetrySettings, "civReclaim");
-        allBaseMask = new ConcurrentBinaryMask(mapSize + 1, random.nextLong(), symmetrySettings, "allBase");
-        treeMask = new ConcurrentBinaryMask(mapSize / 16, random.nextLong(), symmetrySettings, "tree");
-        cliffRockMask = new ConcurrentBinaryMask(mapSize / 16, random.nextLong(), symmetrySettings, "cliffRock");
-        fieldStoneMask = new ConcurrentBinaryMask(mapSize / 4, random.nextLong(), symmetrySettings, "fieldStone");
-        largeRockFieldMask = new ConcurrentBinaryMask(mapSize / 4, random.nextLong(), symmetrySettings, "largeRockField");
-        smallRockFieldMask = new ConcurrentBinaryMask(mapSize / 4, random.nextLong(), symmetrySettings, "smallRockField");
+        baseMask = new ConcurrentBinaryMask(mapSize / 4, random.nextLong(), symmetrySettings, "base", pipeline);
+        civReclaimMask = new ConcurrentBinaryMask(mapSize / 4, random.nextLong(), symmetrySettings, "civReclaim", pipeline);
+        allBaseMask = new ConcurrentBinaryMask(mapSize + 1, random.nextLong(), symmetrySettings, "allBase", pipeline);
+        treeMask = new ConcurrentBinaryMask(mapSize / 16, random.nextLong(), symmetrySettings, "tree", pipeline);
+        cliffRockMask = new ConcurrentBinaryMask(mapSize / 16, random.nextLong(), symmetrySettings, "cliffRock", pipeline);
+        fieldStoneMask = new ConcurrentBinaryMask(mapSize / 4, random.nextLong(), symmetrySettings, "fieldStone", pipeline);
+        largeRockFieldMask = new ConcurrentBinaryMask(mapSize / 4, random.nextLong(), symmetrySettings, "largeRockField", pipeline);
+        smallRockFieldMask = new ConcurrentBinaryMask(mapSize / 4, random.nextLong(), symmetrySettings, "smallRockField", pipeline);
 
         if (hasCivilians) {
             if (!enemyCivilians) {
@@ -980,12 +1030,12 @@ public strictfp class MapGenerator {
     }
 
     private void setupWreckPipeline() {
-        t1LandWreckMask = new ConcurrentBinaryMask(mapSize / 8, random.nextLong(), symmetrySettings, "t1LandWreck");
-        t2LandWreckMask = new ConcurrentBinaryMask(mapSize / 8, random.nextLong(), symmetrySettings, "t2LandWreck");
-        t3LandWreckMask = new ConcurrentBinaryMask(mapSize / 8, random.nextLong(), symmetrySettings, "t3LandWreck");
-        t2NavyWreckMask = new ConcurrentBinaryMask(mapSize / 8, random.nextLong(), symmetrySettings, "t2NavyWreck");
-        navyFactoryWreckMask = new ConcurrentBinaryMask(mapSize / 8, random.nextLong(), symmetrySettings, "navyFactoryWreck");
-        allWreckMask = new ConcurrentBinaryMask(mapSize + 1, random.nextLong(), symmetrySettings, "allWreck");
+        t1LandWreckMask = new ConcurrentBinaryMask(mapSize / 8, random.nextLong(), symmetrySettings, "t1LandWreck", pipeline);
+        t2LandWreckMask = new ConcurrentBinaryMask(mapSize / 8, random.nextLong(), symmetrySettings, "t2LandWreck", pipeline);
+        t3LandWreckMask = new ConcurrentBinaryMask(mapSize / 8, random.nextLong(), symmetrySettings, "t3LandWreck", pipeline);
+        t2NavyWreckMask = new ConcurrentBinaryMask(mapSize / 8, random.nextLong(), symmetrySettings, "t2NavyWreck", pipeline);
+        navyFactoryWreckMask = new ConcurrentBinaryMask(mapSize / 8, random.nextLong(), symmetrySettings, "navyFactoryWreck", pipeline);
+        allWreckMask = new ConcurrentBinaryMask(mapSize + 1, random.nextLong(), symmetrySettings, "allWreck", pipeline);
 
         t1LandWreckMask.randomize(reclaimDensity * .005f).setSize(mapSize + 1).intersect(land).inflate(2).fillEdge(20, false);
         t2LandWreckMask.randomize(reclaimDensity * .0025f).setSize(mapSize + 1).intersect(land).minus(t1LandWreckMask).fillEdge(64, false);
@@ -18,7 +18,7 @@ import java.util.Map;
 
 public class VisualDebugger {
 
-    public static boolean ENABLED = MapGenerator.DEBUG || MapEvaluator.DEBUG || MapPopulator.DEBUG;
+    public static boolean ENABLED = MapEvaluator.DEBUG || MapPopulator.DEBUG;
 
     /**
      * If false, color representation of float masks is scaled to include negative ranges.
@@ -53,9 +53,9 @@ public class VisualDebugger {
     }
 
     public static void visualizeMask(Mask<?> mask) {
-        if (mask.getMask() instanceof Float[][]) {
+        if (mask instanceof FloatMask) {
             visualizeMask((FloatMask) mask);
-        } else if (mask.getMask() instanceof Boolean[][]) {
+        } else if (mask instanceof BinaryMask) {
             visualizeMask((BinaryMask) mask);
         }
     }
@@ -3,6 +3,9 @@ package map;
 import generator.VisualDebugger;
 import lombok.Getter;
 import lombok.SneakyThrows;
+import util.BufferPool;
+import util.ContentHash;
+import util.KernelExecutor;
 import util.Util;
 import util.Vector2f;
 import util.Vector3f;
@@ -10,54 +13,65 @@ import util.Vector3f;
 import java.io.BufferedOutputStream;
 import java.io.DataOutputStream;
 import java.io.FileOutputStream;
-import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.*;
 
+import static util.KernelExecutor.Access.POINTWISE;
+import static util.KernelExecutor.Access.STENCIL;
+
 @Getter
 public strictfp class BinaryMask extends Mask<Boolean> {
+    // disc stamping grows with the radius and the distance transform does not, timing both on 256 to 1024 maps puts the
+    // crossover at max(24, size / 12) as larger maps make the transform dearer
+    private static final float DISTANCE_SPREAD_MIN_RADIUS = 24;
+    private static final int DISTANCE_SPREAD_MIN_RADIUS_FRACTION = 12;
+
+    private long[] mask;
+    private int size;
+
     public BinaryMask(int size, Long seed, SymmetrySettings symmetrySettings) {
         super(seed);
         this.mask = getEmptyMask(size);
+        this.size = size;
         this.symmetrySettings = symmetrySettings;
-        for (int x = 0; x < size; x++) {
-            for (int y = 0; y < size; y++) {
-                this.mask[x][y] = false;
-            }
-        }
         VisualDebugger.visualizeMask(this);
     }
 
+    private BinaryMask(long[] mask, int size, SymmetrySettings symmetrySettings, Long seed) {
+        super(seed);
+        this.mask = mask;
+        this.size = size;
+        this.symmetrySettings = symmetrySettings;
+    }
+
     public BinaryMask(BinaryMask binaryMask, Long seed) {
         super(seed);
-        this.mask = getEmptyMask(binaryMask.getSize());
+        this.mask = getEmptyMask(binaryMask.size);
+        System.arraycopy(binaryMask.mask, 0, this.mask, 0, this.mask.length);
+        this.size = binaryMask.size;
         this.symmetrySettings = binaryMask.getSymmetrySettings();
-        for (int x = 0; x < binaryMask.getSize(); x++) {
-            for (int y = 0; y < binaryMask.getSize(); y++) {
-                this.mask[x][y] = binaryMask.get(x, y);
-            }
-        }
         VisualDebugger.visualizeMask(this);
     }
 
     public BinaryMask(FloatMask floatMask, float threshold, Long seed) {
         super(seed);
-        this.mask = getEmptyMask(floatMask.getSize());
+        this.size = floatMask.getSize();
+        this.mask = getEmptyMask(size);
         this.symmetrySettings = floatMask.getSymmetrySettings();
-        for (int x = 0; x < floatMask.getSize(); x++) {
-            for (int y = 0; y < floatMask.getSize(); y++) {
-                set(x, y, floatMask.get(x, y) >= threshold);
+        KernelExecutor.forEachRow(size, getRowAlignment(), POINTWISE, 0, (start, end) -> {
+            for (int x = start; x < end; x++) {
+                for (int y = 0; y < size; y++) {
+                    setBit(x, y, floatMask.getValueAt(x, y) >= threshold);
+                }
             }
-        }
+        });
         VisualDebugger.visualizeMask(this);
     }
 
     @Override
     public int getSize() {
-        return mask[0].length;
+        return size;
     }
 
     @Override
@@ -77,7 +91,7 @@ public strictfp class BinaryMask extends Mask<Boolean> {
 
     @Override
     public Boolean get(int x, int y) {
-        return mask[x][y];
+        return getBit(x, y);
     }
 
     @Override
@@ -91,26 +105,91 @@ public strictfp class BinaryMask extends Mask<Boolean> {
 
     @Override
     public void set(int x, int y, Boolean value) {
-        mask[x][y] = value;
+        setBit(x, y, value);
+    }
+
+    public boolean getBit(int x, int y) {
+        return getBit(mask, x * size + y);
+    }
+
+    boolean getBit(int index) {
+        return getBit(mask, index);
+    }
+
+    public void setBit(int x, int y, boolean value) {
+        setBit(mask, x * size + y, value);
+    }
+
+    // bits past the last cell stay clear so whole words can be counted and compared
+    private static long[] getEmptyMask(int size) {
+        return BufferPool.borrowLongs((size * size + 63) >>> 6);
+    }
+
+    private static boolean getBit(long[] words, int index) {
+        return (words[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static void setBit(long[] words, int index, boolean value) {
+        if (value) {
+            words[index >>> 6] |= 1L << index;
+        } else {
+            words[index >>> 6] &= ~(1L << index);
+        }
+    }
+
+    // bands written from different threads start on multiples of this so they never share a word
+    int getRowAlignment() {
+        return 64 / Integer.lowestOneBit(size | 64);
+    }
+
+    private long getLastWordMask() {
+        int usedBits = (size * size) & 63;
+        return usedBits == 0 ? -1L : (1L << usedBits) - 1;
     }
 
     @Override
-    protected Boolean[][] getEmptyMask(int size) {
-        Boolean[][] tempCopy = new Boolean[size][size];
-        for (int x = 0; x < size; x++) {
-            for (int y = 0; y < size; y++) {
-                tempCopy[x][y] = false;
+    protected void remap(int size, int[] sourceIndices) {
+        long[] newMask = getEmptyMask(size);
+        for (int i = 0; i < sourceIndices.length; i++) {
+            if (getBit(mask, sourceIndices[i])) {
+                setBit(newMask, i, true);
             }
         }
-        return tempCopy;
+        BufferPool.release(mask);
+        this.mask = newMask;
+        this.size = size;
+    }
+
+    @Override
+    protected void copyCells(int[] sources, int[] destinations) {
+        for (int i = 0; i < sources.length; i++) {
+            setBit(mask, destinations[i], getBit(mask, sources[i]));
+        }
+    }
+
+    @Override
+    void release() {
+        BufferPool.release(mask);
+        mask = null;
+    }
+
+    // shares the cells until detach(), must only be read
+    BinaryMask view(Long seed) {
+        return new BinaryMask(mask, size, symmetrySettings, seed);
+    }
+
+    void detach() {
+        long[] cells = getEmptyMask(size);
+        System.arraycopy(mask, 0, cells, 0, cells.length);
+        mask = cells;
     }
 
     public boolean isEdge(int x, int y) {
-        boolean value = get(x, y);
-        return ((x > 0 && get(x - 1, y) != value)
-                || (y > 0 && get(x, y - 1) != value)
-                || (x < getSize() - 1 && get(x + 1, y) != value)
-                || (y < getSize() - 1 && get(x, y + 1) != value));
+        boolean value = getBit(x, y);
+        return ((x > 0 && getBit(x - 1, y) != value)
+                || (y > 0 && getBit(x, y - 1) != value)
+                || (x < size - 1 && getBit(x + 1, y) != value)
+                || (y < size - 1 && getBit(x, y + 1) != value));
     }
 
     public BinaryMask fillRectangularAreaFromPoints(int x1, int x2, int z1, int z2, boolean value) {
@@ -130,12 +209,7 @@ public strictfp class BinaryMask extends Mask<Boolean> {
     }
 
     public BinaryMask clear() {
-        for (int x = 0; x < getSize(); x++) {
-            for (int y = 0; y < getSize(); y++) {
-                set(x, y, false);
-            }
-        }
-        applySymmetry();
+        Arrays.fill(mask, 0L);
         VisualDebugger.visualizeMask(this);
         return this;
     }
@@ -216,95 +290,255 @@ public strictfp class BinaryMask extends Mask<Boolean> {
     }
 
     public BinaryMask invert() {
-        for (int x = 0; x < getSize(); x++) {
-            for (int y = 0; y < getSize(); y++) {
-                set(x, y, !get(x, y));
-            }
+        for (int i = 0; i < mask.length; i++) {
+            mask[i] = ~mask[i];
         }
+        mask[mask.length - 1] &= getLastWordMask();
         VisualDebugger.visualizeMask(this);
         return this;
     }
 
     public BinaryMask inflate(float radius) {
-        Boolean[][] maskCopy = getEmptyMask(getSize());
+        if (isDistanceSpreadCheaper(radius)) {
+            spreadByDistance(true, radius);
+        } else {
+            spreadByDisc(true, radius);
+        }
 
+        VisualDebugger.visualizeMask(this);
+        return this;
+    }
+
+    public BinaryMask deflate(float radius) {
+        if (isDistanceSpreadCheaper(radius)) {
+            spreadByDistance(false, radius);
+        } else {
+            spreadByDisc(false, radius);
+        }
+
+        VisualDebugger.visualizeMask(this);
+        return this;
+    }
+
+    boolean isDistanceSpreadCheaper(float radius) {
+        return radius >= StrictMath.max(DISTANCE_SPREAD_MIN_RADIUS, (float) size / DISTANCE_SPREAD_MIN_RADIUS_FRACTION) && radius <= size / 2f;
+    }
+
+    void spreadByDisc(boolean value, float radius) {
+        long[] rows = getRows();
+        long[] sources = getEdgeRows(rows, value);
+        long[] dilated = dilateRows(sources, radius);
+        orRows(dilated, !value);
+        BufferPool.release(rows);
+        BufferPool.release(sources);
+        BufferPool.release(dilated);
+    }
+
+    // radii up to half the size keep every squared distance a whole number the floats hold exactly
+    void spreadByDistance(boolean value, float radius) {
+        float[] distances = BufferPool.borrowFloats(size * size);
+        float unreached = 2f * size * size;
+        for (int i = 0; i < distances.length; i++) {
+            distances[i] = getBit(i) == value ? 0f : unreached;
+        }
+        DistanceTransform.transform(distances, size);
         float radius2 = (radius + 0.5f) * (radius + 0.5f);
-        for (int x = 0; x < getSize(); x++) {
-            for (int y = 0; y < getSize(); y++) {
-                if (isEdge(x, y) && get(x, y)) {
-                    for (int x2 = (int) (x - radius); x2 < x + radius + 1; x2++) {
-                        for (int y2 = (int) (y - radius); y2 < y + radius + 1; y2++) {
-                            if (inBounds(x2, y2) && (x - x2) * (x - x2) + (y - y2) * (y - y2) <= radius2) {
-                                maskCopy[x2][y2] = true;
-                            }
-                        }
+        KernelExecutor.forEachRow(size, getRowAlignment(), POINTWISE, 0, (start, end) -> {
+            for (int x = start; x < end; x++) {
+                for (int y = 0; y < size; y++) {
+                    if (distances[x * size + y] <= radius2) {
+                        setBit(x, y, value);
                     }
                 }
             }
+        });
+        BufferPool.release(distances);
+    }
+
+    private int getRowWords() {
+        return (size + 63) >>> 6;
+    }
+
+    private long getRowTailMask() {
+        int usedBits = size & 63;
+        return usedBits == 0 ? -1L : (1L << usedBits) - 1;
+    }
+
+    private long[] getRows() {
+        int rowWords = getRowWords();
+        long tailMask = getRowTailMask();
+        long[] rows = BufferPool.borrowLongs(size * rowWords);
+        for (int x = 0; x < size; x++) {
+            for (int w = 0; w < rowWords; w++) {
+                long word = getWord(mask, x * size + (w << 6));
+                rows[x * rowWords + w] = w == rowWords - 1 ? word & tailMask : word;
+            }
         }
+        return rows;
+    }
 
-        for (int x = 0; x < getSize(); x++) {
-            for (int y = 0; y < getSize(); y++) {
-                if (maskCopy[x][y]) {
-                    set(x, y, true);
+    private void orRows(long[] rows, boolean subtract) {
+        int rowWords = getRowWords();
+        for (int x = 0; x < size; x++) {
+            for (int w = 0; w < rowWords; w++) {
+                long word = rows[x * rowWords + w];
+                if (word != 0) {
+                    orWord(mask, x * size + (w << 6), word, subtract);
                 }
             }
         }
-
-        VisualDebugger.visualizeMask(this);
-        return this;
     }
 
-    public BinaryMask deflate(float radius) {
-        Boolean[][] maskCopy = getEmptyMask(getSize());
+    private long[] getEdgeRows(long[] rows, boolean value) {
+        int rowWords = getRowWords();
+        long tailMask = getRowTailMask();
+        long[] edges = BufferPool.borrowLongs(size * rowWords);
+        long[] shifted = new long[rowWords];
+        for (int x = 0; x < size; x++) {
+            int row = x * rowWords;
+            for (int w = 0; w < rowWords; w++) {
+                long bits = rows[row + w];
+                long diff = 0;
+                if (x > 0) {
+                    diff |= bits ^ rows[row - rowWords + w];
+                }
+                if (x < size - 1) {
+                    diff |= bits ^ rows[row + rowWords + w];
+                }
+                edges[row + w] = diff;
+            }
+            shiftRow(rows, row, shifted, 0, rowWords, 1);
+            shifted[0] |= rows[row] & 1L;
+            for (int w = 0; w < rowWords; w++) {
+                edges[row + w] |= rows[row + w] ^ shifted[w];
+            }
+            shiftRow(rows, row, shifted, 0, rowWords, -1);
+            shifted[rowWords - 1] |= rows[row + rowWords - 1] & ~(tailMask >>> 1) & tailMask;
+            for (int w = 0; w < rowWords; w++) {
+                long bits = value ? rows[row + w] : ~rows[row + w];
+                edges[row + w] |= rows[row + w] ^ shifted[w];
+                edges[row + w] &= bits;
+            }
+            edges[row + rowWords - 1] &= tailMask;
+        }
+        return edges;
+    }
 
+    private long[] dilateRows(long[] sources, float radius) {
+        int rowWords = getRowWords();
+        long tailMask = getRowTailMask();
+        long[] dilated = BufferPool.borrowLongs(size * rowWords);
+        long[] span = new long[rowWords];
+        long[] shifted = new long[rowWords];
         float radius2 = (radius + 0.5f) * (radius + 0.5f);
-        for (int x = 0; x < getSize(); x++) {
-            for (int y = 0; y < getSize(); y++) {
-                if (isEdge(x, y) && !get(x, y)) {
-                    for (int x2 = (int) (x - radius); x2 < x + radius + 1; x2++) {
-                        for (int y2 = (int) (y - radius); y2 < y + radius + 1; y2++) {
-                            if (inBounds(x2, y2) && (x - x2) * (x - x2) + (y - y2) * (y - y2) <= radius2) {
-                                maskCopy[x2][y2] = true;
-                            }
-                        }
-                    }
+        int minOffset = (int) StrictMath.floor(-radius);
+        for (int dx = minOffset; dx < radius + 1; dx++) {
+            int low = Integer.MAX_VALUE;
+            int high = Integer.MIN_VALUE;
+            for (int dy = minOffset; dy < radius + 1; dy++) {
+                if (dx * dx + dy * dy <= radius2) {
+                    low = StrictMath.min(low, dy);
+                    high = StrictMath.max(high, dy);
+                }
+            }
+            if (low > high) {
+                continue;
+            }
+            for (int x = StrictMath.max(0, -dx); x < StrictMath.min(size, size - dx); x++) {
+                int row = x * rowWords;
+                int target = (x + dx) * rowWords;
+                System.arraycopy(sources, row, span, 0, rowWords);
+                spreadRow(span, shifted, rowWords, high);
+                for (int w = 0; w < rowWords; w++) {
+                    dilated[target + w] |= span[w];
                 }
+                System.arraycopy(sources, row, span, 0, rowWords);
+                spreadRow(span, shifted, rowWords, low);
+                for (int w = 0; w < rowWords; w++) {
+                    dilated[target + w] |= span[w];
+                }
+                dilated[target + rowWords - 1] &= tailMask;
+            }
+        }
+        return dilated;
+    }
+
+    private static void spreadRow(long[] row, long[] scratch, int words, int extent) {
+        int length = StrictMath.abs(extent);
+        int direction = extent < 0 ? -1 : 1;
+        int covered = 0;
+        while (covered < length) {
+            int step = StrictMath.min(covered + 1, length - covered);
+            shiftRow(row, 0, scratch, 0, words, step * direction);
+            for (int w = 0; w < words; w++) {
+                row[w] |= scratch[w];
             }
+            covered += step;
         }
+    }
 
-        for (int x = 0; x < getSize(); x++) {
-            for (int y = 0; y < getSize(); y++) {
-                if (maskCopy[x][y]) {
-                    set(x, y, false);
-                }
+    private static void shiftRow(long[] source, int sourceOffset, long[] destination, int destinationOffset, int words, int shift) {
+        int wordShift = shift >> 6;
+        int bitShift = shift & 63;
+        for (int w = 0; w < words; w++) {
+            int from = w - wordShift;
+            long low = from >= 0 && from < words ? source[sourceOffset + from] : 0L;
+            long value = low << bitShift;
+            if (bitShift != 0) {
+                int below = from - 1;
+                value |= below >= 0 && below < words ? source[sourceOffset + below] >>> (64 - bitShift) : 0L;
             }
+            destination[destinationOffset + w] = value;
         }
+    }
 
-        VisualDebugger.visualizeMask(this);
-        return this;
+    private static long getWord(long[] words, int index) {
+        int word = index >>> 6;
+        int shift = index & 63;
+        long value = words[word] >>> shift;
+        if (shift != 0 && word + 1 < words.length) {
+            value |= words[word + 1] << (64 - shift);
+        }
+        return value;
+    }
+
+    private static void orWord(long[] words, int index, long value, boolean subtract) {
+        int word = index >>> 6;
+        int shift = index & 63;
+        long low = value << shift;
+        long high = shift != 0 ? value >>> (64 - shift) : 0L;
+        if (subtract) {
+            words[word] &= ~low;
+        } else {
+            words[word] |= low;
+        }
+        if (high != 0) {
+            if (subtract) {
+                words[word + 1] &= ~high;
+            } else {
+                words[word + 1] |= high;
+            }
+        }
     }
 
     public BinaryMask cutCorners() {
-        int size = getSize();
-        Boolean[][] maskCopy = getEmptyMask(getSize());
+        long[] maskCopy = getEmptyMask(size);
         for (int x = 0; x < size; x++) {
             for (int y = 0; y < size; y++) {
                 int count = 0;
-                if (x > 0 && !get(x - 1, y))
+                if (x > 0 && !getBit(x - 1, y))
                     count++;
-                if (y > 0 && !get(x, y - 1))
+                if (y > 0 && !getBit(x, y - 1))
                     count++;
-                if (x < size - 1 && !get(x + 1, y))
+                if (x < size - 1 && !getBit(x + 1, y))
                     count++;
-                if (y < size - 1 && !get(x, y + 1))
+                if (y < size - 1 && !getBit(x, y + 1))
                     count++;
-                if (count > 1)
-                    maskCopy[x][y] = false;
-                else
-                    maskCopy[x][y] = get(x, y);
+                if (count <= 1)
+                    setBit(maskCopy, x * size + y, getBit(x, y));
             }
         }
+        BufferPool.release(mask);
         mask = maskCopy;
         VisualDebugger.visualizeMask(this);
         return this;
@@ -313,9 +547,10 @@ public strictfp class BinaryMask extends Mask<Boolean> {
     public BinaryMask acid(float strength, float size) {
         BinaryMask holes = new BinaryMask(getSize(), random.nextLong(), getSymmetrySettings());
         holes.randomize(strength).inflate(size);
-        BinaryMask maskCopy = this.copy();
-        maskCopy.minus(holes);
-        mask = maskCopy.getMask();
+        // draw the seed the scratch copy used to take so the random stream of existing maps is unchanged
+        random.nextLong();
+        minus(holes);
+        holes.release();
         VisualDebugger.visualizeMask(this);
         return this;
     }
@@ -329,21 +564,7 @@ public strictfp class BinaryMask extends Mask<Boolean> {
     }
 
     public BinaryMask grow(float strength, Symmetry symmetry, int count) {
-        for (int i = 0; i < count; i++) {
-            Boolean[][] maskCopy = getEmptyMask(getSize());
-            for (int x = getMinXBound(symmetry); x < getMaxXBound(symmetry); x++) {
-                for (int y = getMinYBound(x, symmetry); y < getMaxYBound(x, symmetry); y++) {
-                    if (isEdge(x, y)) {
-                        boolean value = random.nextFloat() < strength;
-                        maskCopy[x][y] = get(x, y) || value;
-                    } else if (inBounds(x, y)) {
-                        maskCopy[x][y] = get(x, y);
-                    }
-                }
-            }
-            mask = maskCopy;
-            applySymmetry(symmetry);
-        }
+        spreadEdges(true, strength, symmetry, count);
         VisualDebugger.visualizeMask(this);
         return this;
     }
@@ -357,49 +578,128 @@ public strictfp class BinaryMask extends Mask<Boolean> {
     }
 
     public BinaryMask erode(float strength, Symmetry symmetry, int count) {
+        spreadEdges(false, strength, symmetry, count);
+        VisualDebugger.visualizeMask(this);
+        return this;
+    }
+
+    // edge cells draw in index order as the full scan did, so the random stream is unchanged
+    private void spreadEdges(boolean value, float strength, Symmetry symmetry, int count) {
+        if (count <= 0) {
+            return;
+        }
+        SymmetryDomain domain = SymmetryDomain.get(this, symmetry);
+        long[] region = domain.getRegionWords();
+        long[] frontier = BufferPool.borrowLongs(mask.length);
+        int[] flipped = BufferPool.borrowInts(size * size);
+        int[] changed = BufferPool.borrowInts(size * size);
+        boolean incremental = false;
         for (int i = 0; i < count; i++) {
-            Boolean[][] maskCopy = getEmptyMask(getSize());
-            for (int x = getMinXBound(symmetry); x < getMaxXBound(symmetry); x++) {
-                for (int y = getMinYBound(x, symmetry); y < getMaxYBound(x, symmetry); y++) {
-                    if (inBounds(x, y)) {
-                        boolean value = isEdge(x, y) && random.nextFloat() < strength;
-                        maskCopy[x][y] = mask[x][y] && !value;
+            if (!incremental) {
+                fillFrontier(frontier, region);
+            }
+            int flipCount = 0;
+            for (int w = 0; w < frontier.length; w++) {
+                long word = frontier[w];
+                while (word != 0) {
+                    int index = (w << 6) + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    if (random.nextFloat() < strength && getBit(index) != value) {
+                        flipped[flipCount++] = index;
                     }
                 }
             }
-            mask = maskCopy;
-            applySymmetry(symmetry);
+            if (incremental) {
+                int[] imageStarts = domain.getImageStarts();
+                int[] images = domain.getImages();
+                int changedCount = 0;
+                for (int f = 0; f < flipCount; f++) {
+                    for (int j = imageStarts[flipped[f]]; j < imageStarts[flipped[f] + 1]; j++) {
+                        int cell = images[j];
+                        mask[cell >>> 6] ^= 1L << cell;
+                        changed[changedCount++] = cell;
+                    }
+                }
+                for (int c = 0; c < changedCount; c++) {
+                    int cell = changed[c];
+                    int x = cell / size;
+                    int y = cell % size;
+                    updateFrontier(frontier, region, cell);
+                    if (x > 0) {
+                        updateFrontier(frontier, region, cell - size);
+                    }
+                    if (x < size - 1) {
+                        updateFrontier(frontier, region, cell + size);
+                    }
+                    if (y > 0) {
+                        updateFrontier(frontier, region, cell - 1);
+                    }
+                    if (y < size - 1) {
+                        updateFrontier(frontier, region, cell + 1);
+                    }
+                }
+            } else {
+                for (int w = 0; w < mask.length; w++) {
+                    mask[w] &= region[w];
+                }
+                for (int f = 0; f < flipCount; f++) {
+                    setBit(mask, flipped[f], value);
+                }
+                applySymmetry(symmetry);
+                incremental = domain.isStable();
+                if (incremental && i < count - 1) {
+                    fillFrontier(frontier, region);
+                }
+            }
+        }
+        BufferPool.release(frontier);
+        BufferPool.release(flipped);
+        BufferPool.release(changed);
+    }
+
+    private void fillFrontier(long[] frontier, long[] region) {
+        for (int w = 0; w < frontier.length; w++) {
+            long word = region[w];
+            long edges = 0;
+            while (word != 0) {
+                int bit = Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                if (isEdge((w << 6) + bit)) {
+                    edges |= 1L << bit;
+                }
+            }
+            frontier[w] = edges;
         }
-        VisualDebugger.visualizeMask(this);
-        return this;
     }
 
-    public BinaryMask outline() {
-        Boolean[][] maskCopy = getEmptyMask(getSize());
+    private boolean isEdge(int index) {
+        return isEdge(index / size, index % size);
+    }
 
-        for (int x = 0; x < getSize(); x++) {
-            for (int y = 0; y < getSize(); y++) {
-                maskCopy[x][y] = isEdge(x, y);
-            }
+    private void updateFrontier(long[] frontier, long[] region, int index) {
+        long bit = 1L << index;
+        if ((region[index >>> 6] & bit) == 0) {
+            return;
+        }
+        if (isEdge(index)) {
+            frontier[index >>> 6] |= bit;
+        } else {
+            frontier[index >>> 6] &= ~bit;
         }
-        mask = maskCopy;
-        VisualDebugger.visualizeMask(this);
-        return this;
     }
 
-    public int[][] getInnerCount() {
-        int[][] innerCount = new int[getSize()][getSize()];
+    public BinaryMask outline() {
+        long[] maskCopy = getEmptyMask(size);
 
-        for (int x = 0; x < getSize(); x++) {
-            for (int y = 0; y < getSize(); y++) {
-                int val = get(x, y) ? 1 : 0;
-                innerCount[x][y] = val;
-                innerCount[x][y] += x > 0 ? innerCount[x - 1][y] : 0;
-                innerCount[x][y] += y > 0 ? innerCount[x][y - 1] : 0;
-                innerCount[x][y] -= x > 0 && y > 0 ? innerCount[x - 1][y - 1] : 0;
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                setBit(maskCopy, x * size + y, isEdge(x, y));
             }
         }
-        return innerCount;
+        BufferPool.release(mask);
+        mask = maskCopy;
+        VisualDebugger.visualizeMask(this);
+        return this;
     }
 
     public BinaryMask smooth(int radius) {
@@ -407,39 +707,68 @@ public strictfp class BinaryMask extends Mask<Boolean> {
     }
 
     public BinaryMask smooth(int radius, float density) {
-        int[][] innerCount = getInnerCount();
-
-        for (int x = 0; x < getSize(); x++) {
-            for (int y = 0; y < getSize(); y++) {
-                int xLeft = StrictMath.max(0, x - radius);
-                int xRight = StrictMath.min(getSize() - 1, x + radius);
-                int yUp = StrictMath.max(0, y - radius);
-                int yDown = StrictMath.min(getSize() - 1, y + radius);
-                int countA = xLeft > 0 && yUp > 0 ? innerCount[xLeft - 1][yUp - 1] : 0;
-                int countB = yUp > 0 ? innerCount[xRight][yUp - 1] : 0;
-                int countC = xLeft > 0 ? innerCount[xLeft - 1][yDown] : 0;
-                int countD = innerCount[xRight][yDown];
-                int count = countD + countA - countB - countC;
-                int area = (xRight - xLeft + 1) * (yDown - yUp + 1);
-                set(x, y, count >= area * density);
-            }
+        if (BoxFilter.isSeparableCheaper(size, radius)) {
+            long[] rowCounts = getRowWindowCounts(radius);
+            BoxFilter.forEachWindowRow(size, radius, rowCounts, getRowAlignment(), (x, windowCounts) -> {
+                for (int y = 0; y < size; y++) {
+                    set(x, y, windowCounts[y] >= BoxFilter.getArea(size, radius, x, y) * density);
+                }
+            });
+            BufferPool.release(rowCounts);
+        } else {
+            long[] table = BoxFilter.getSummedAreaTable(size, index -> getBit(index) ? 1 : 0);
+            KernelExecutor.forEachRow(size, getRowAlignment(), STENCIL, radius, (start, end) -> {
+                for (int x = start; x < end; x++) {
+                    for (int y = 0; y < size; y++) {
+                        set(x, y, BoxFilter.getWindowSum(table, size, radius, x, y) >= BoxFilter.getArea(size, radius, x, y) * density);
+                    }
+                }
+            });
+            BufferPool.release(table);
         }
 
         VisualDebugger.visualizeMask(this);
         return this;
     }
 
+    private long[] getRowWindowCounts(int radius) {
+        long[] rowCounts = BufferPool.borrowLongs(size * size);
+        KernelExecutor.forEachRow(size, POINTWISE, (start, end) -> {
+            for (int x = start; x < end; x++) {
+                int row = x * size;
+                for (int y = 0; y < size; y++) {
+                    rowCounts[row + y] = countBits(row + StrictMath.max(0, y - radius), row + StrictMath.min(size, y + radius + 1));
+                }
+            }
+        });
+        return rowCounts;
+    }
+
+    private int countBits(int from, int to) {
+        if (from >= to) {
+            return 0;
+        }
+        int firstWord = from >>> 6;
+        int lastWord = (to - 1) >>> 6;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> (63 - ((to - 1) & 63));
+        if (firstWord == lastWord) {
+            return Long.bitCount(mask[firstWord] & firstMask & lastMask);
+        }
+        int count = Long.bitCount(mask[firstWord] & firstMask) + Long.bitCount(mask[lastWord] & lastMask);
+        for (int word = firstWord + 1; word < lastWord; word++) {
+            count += Long.bitCount(mask[word]);
+        }
+        return count;
+    }
+
     public BinaryMask combine(BinaryMask other) {
         if (other.getSize() != getSize()) {
             throw new IllegalArgumentException("Masks not the same size");
         }
-        Boolean[][] maskCopy = getEmptyMask(getSize());
-        for (int x = 0; x < getSize(); x++) {
-            for (int y = 0; y < getSize(); y++) {
-                maskCopy[x][y] = get(x, y) || other.get(x, y);
-            }
+        for (int i = 0; i < mask.length; i++) {
+            mask[i] |= other.mask[i];
         }
-        mask = maskCopy;
         VisualDebugger.visualizeMask(this);
         return this;
     }
@@ -448,13 +777,9 @@ public strictfp class BinaryMask extends Mask<Boolean> {
         if (other.getSize() != getSize()) {
             throw new IllegalArgumentException("Masks not the same size");
         }
-        Boolean[][] maskCopy = getEmptyMask(getSize());
-        for (int x = 0; x < getSize(); x++) {
-            for (int y = 0; y < getSize(); y++) {
-                maskCopy[x][y] = get(x, y) && other.get(x, y);
-            }
+        for (int i = 0; i < mask.length; i++) {
+            mask[i] &= other.mask[i];
         }
-        mask = maskCopy;
         VisualDebugger.visualizeMask(this);
         return this;
     }
@@ -463,13 +788,9 @@ public strictfp class BinaryMask extends Mask<Boolean> {
         if (other.getSize() != getSize()) {
             throw new IllegalArgumentException("Masks not the same size");
         }
-        Boolean[][] maskCopy = getEmptyMask(getSize());
-        for (int x = 0; x < getSize(); x++) {
-            for (int y = 0; y < getSize(); y++) {
-                maskCopy[x][y] = get(x, y) && !other.get(x, y);
-            }
+        for (int i = 0; i < mask.length; i++) {
+            mask[i] &= ~other.mask[i];
         }
-        mask = maskCopy;
         VisualDebugger.visualizeMask(this);
         return this;
     }
@@ -536,16 +857,9 @@ public strictfp class BinaryMask extends Mask<Boolean> {
     }
 
     public BinaryMask limitToSpawnRegion() {
-        Symmetry spawnSymmetry = symmetrySettings.getSpawnSymmetry();
-        for (int x = 0; x < getSize(); x++) {
-            for (int y = 0; y < getSize(); y++) {
-                if (x < getMinXBound(spawnSymmetry)
-                        || x >= getMaxXBound(spawnSymmetry)
-                        || y < getMinYBound(x, spawnSymmetry)
-                        || y >= getMaxYBound(x, spawnSymmetry)) {
-                    set(x, y, false);
-                }
-            }
+        long[] region = SymmetryDomain.get(this, symmetrySettings.getSpawnSymmetry()).getRegionWords();
+        for (int i = 0; i < mask.length; i++) {
+            mask[i] &= region[i];
         }
         VisualDebugger.visualizeMask(this);
         return this;
@@ -658,31 +972,9 @@ public strictfp class BinaryMask extends Mask<Boolean> {
     }
 
     public BinaryMask fillShape(Vector2f location) {
-        LinkedHashSet<Vector2f> area = new LinkedHashSet<>();
-        LinkedHashSet<Vector2f> edge = new LinkedHashSet<>();
-        LinkedHashSet<Vector2f> queueHash = new LinkedHashSet<>();
-        LinkedList<Vector2f> queue = new LinkedList<>();
-        List<int[]> edges = Arrays.asList(new int[]{0, 1}, new int[]{-1, 0}, new int[]{0, -1}, new int[]{1, 0});
         boolean value = get(location);
-        queue.add(location);
-        queueHash.add(location);
-        while (queue.size() > 0) {
-            Vector2f next = queue.get(0);
-            queue.remove(next);
-            queueHash.remove(next);
-            if (get(next) == value && !area.contains(next)) {
-                set(next, !value);
-                area.add(next);
-                edges.forEach((e) -> {
-                    Vector2f newLocation = new Vector2f(next.x + e[0], next.y + e[1]);
-                    if (!queueHash.contains(newLocation) && !area.contains(newLocation) && !edge.contains(newLocation) && inBounds(newLocation)) {
-                        queue.add(newLocation);
-                        queueHash.add(newLocation);
-                    }
-                });
-            } else if (mask[(int) next.x][(int) next.y] != value) {
-                edge.add(next);
-            }
+        for (int index : getShapeIndices((int) location.x, (int) location.y, getSize() * getSize())) {
+            setBit(mask, index, !value);
         }
         VisualDebugger.visualizeMask(this);
         return this;
@@ -693,34 +985,66 @@ public strictfp class BinaryMask extends Mask<Boolean> {
     }
 
     public LinkedHashSet<Vector2f> getShapeCoordinates(Vector2f location, int maxSize) {
-        LinkedHashSet<Vector2f> areaHash = new LinkedHashSet<>();
-        LinkedHashSet<Vector2f> edgeHash = new LinkedHashSet<>();
-        LinkedList<Vector2f> queue = new LinkedList<>();
-        LinkedHashSet<Vector2f> queueHash = new LinkedHashSet<>();
-        List<int[]> edges = Arrays.asList(new int[]{0, 1}, new int[]{-1, 0}, new int[]{0, -1}, new int[]{1, 0});
-        boolean value = get(location);
-        queue.add(location);
-        queueHash.add(location);
-        while (queue.size() > 0) {
-            Vector2f next = queue.remove();
-            queueHash.remove(next);
-            if (get(next) == value && !areaHash.contains(next)) {
-                areaHash.add(next);
-                edges.forEach((e) -> {
-                    Vector2f newLocation = new Vector2f(next.x + e[0], next.y + e[1]);
-                    if (!queueHash.contains(newLocation) && !areaHash.contains(newLocation) && !edgeHash.contains(newLocation) && inBounds(newLocation)) {
-                        queue.add(newLocation);
-                        queueHash.add(newLocation);
-                    }
-                });
-            } else if (get(next) != value) {
-                edgeHash.add(next);
+        int[] indices = getShapeIndices((int) location.x, (int) location.y, maxSize);
+        LinkedHashSet<Vector2f> areaHash = new LinkedHashSet<>(indices.length * 2);
+        for (int index : indices) {
+            areaHash.add(new Vector2f(index / size, index % size));
+        }
+        return areaHash;
+    }
+
+    // stops once the area passes maxSize and returns maxSize + 1 of its cells
+    public int[] getShapeIndices(int x, int y, int maxSize) {
+        boolean value = getBit(x, y);
+        long[] visited = BufferPool.borrowLongs(mask.length);
+        int[] cells = new int[64];
+        int cellCount = 0;
+        int[] stack = new int[64];
+        int stackSize = 0;
+        stack[stackSize++] = x * size + y;
+        while (stackSize > 0 && cellCount <= maxSize) {
+            int seed = stack[--stackSize];
+            if (getBit(visited, seed) || getBit(seed) != value) {
+                continue;
+            }
+            int row = seed / size * size;
+            int spanStart = seed;
+            while (spanStart > row && getBit(spanStart - 1) == value) {
+                spanStart--;
             }
-            if (areaHash.size() > maxSize) {
-                break;
+            int spanEnd = seed + 1;
+            while (spanEnd < row + size && getBit(spanEnd) == value) {
+                spanEnd++;
+            }
+            for (int index = spanStart; index < spanEnd; index++) {
+                setBit(visited, index, true);
+                if (cellCount == cells.length) {
+                    cells = Arrays.copyOf(cells, cells.length * 2);
+                }
+                cells[cellCount++] = index;
+            }
+            for (int neighbourOffset = -size; neighbourOffset <= size; neighbourOffset += 2 * size) {
+                if (row + neighbourOffset < 0 || row + neighbourOffset >= size * size) {
+                    continue;
+                }
+                boolean inSpan = false;
+                for (int index = spanStart + neighbourOffset; index < spanEnd + neighbourOffset; index++) {
+                    if (!getBit(visited, index) && getBit(index) == value) {
+                        if (!inSpan) {
+                            if (stackSize == stack.length) {
+                                stack = Arrays.copyOf(stack, stack.length * 2);
+                            }
+                            stack[stackSize++] = index;
+                            inSpan = true;
+                        }
+                    } else {
+                        inSpan = false;
+                    }
+                }
             }
         }
-        return areaHash;
+        BufferPool.release(visited);
+        return Arrays.copyOf(cells, cellCount > maxSize ? maxSize + 1 : cellCount);
     }
 
     public BinaryMask fillCoordinates(Collection<Vector2f> coordinates, boolean value) {
@@ -730,89 +1054,92 @@ public strictfp class BinaryMask extends Mask<Boolean> {
     }
 
     public BinaryMask fillGaps(int minDist) {
-        FloatMask distanceField = getDistanceField();
+        FloatMask distanceField = getSquaredDistanceField();
+        float distanceLimit = getSquaredDistanceLimit(minDist / 2f);
         BinaryMask filledGaps = new BinaryMask(getSize(), random.nextLong(), symmetrySettings);
         for (int x = 0; x < getSize(); x++) {
             for (int y = 0; y < getSize(); y++) {
-                float distance = distanceField.get(x, y);
-                if (distance < minDist / 2f && distance > 0f && distanceField.isLocalMax(x, y)) {
+                float squaredDistance = distanceField.get(x, y);
+                if (squaredDistance < distanceLimit && squaredDistance > 0f && distanceField.isLocalMax(x, y)) {
                     filledGaps.set(x, y, true);
                 }
             }
         }
+        distanceField.release();
         filledGaps.inflate(minDist / 2f).smooth(4, .75f);
         combine(filledGaps);
+        filledGaps.release();
         applySymmetry(symmetrySettings.getSpawnSymmetry());
         VisualDebugger.visualizeMask(this);
         return this;
     }
 
     public BinaryMask widenGaps(int minDist) {
-        FloatMask distanceField = copy().invert().getDistanceField();
+        BinaryMask inverted = copy().invert();
+        FloatMask distanceField = inverted.getSquaredDistanceField();
+        inverted.release();
+        float distanceLimit = getSquaredDistanceLimit(minDist / 2f);
         BinaryMask filledGaps = new BinaryMask(getSize(), random.nextLong(), symmetrySettings);
         for (int x = 0; x < getSize(); x++) {
             for (int y = 0; y < getSize(); y++) {
-                float distance = distanceField.get(x, y);
-                if (distance < minDist / 2f && distance > 0f && distanceField.isLocalMax(x, y)) {
+                float squaredDistance = distanceField.get(x, y);
+                if (squaredDistance < distanceLimit && squaredDistance > 0f && distanceField.isLocalMax(x, y)) {
                     filledGaps.set(x, y, true);
                 }
             }
         }
+        distanceField.release();
         filledGaps.inflate(minDist / 2f).smooth(4, .75f);
         minus(filledGaps);
+        filledGaps.release();
         applySymmetry(symmetrySettings.getSpawnSymmetry());
         VisualDebugger.visualizeMask(this);
         return this;
     }
 
     public BinaryMask removeAreasSmallerThan(int minArea) {
-        LinkedHashSet<Vector2f> locHash = new LinkedHashSet<>();
-        FloatMask distanceField = getDistanceField();
-        for (int x = 0; x < getSize(); x++) {
-            for (int y = 0; y < getSize(); y++) {
-                float distance = distanceField.get(x, y);
-                if (distance < StrictMath.sqrt(minArea) && distance > 0f && distanceField.isLocalMax(x, y)) {
-                    locHash.add(new Vector2f(x, y));
+        FloatMask distanceField = getSquaredDistanceField();
+        float distanceLimit = getSquaredDistanceLimit(StrictMath.sqrt(minArea));
+        flipSeededAreasSmallerThan(false, minArea, distanceField, distanceLimit);
+        distanceField.release();
+        BinaryMask inverted = copy().invert();
+        distanceField = inverted.getSquaredDistanceField();
+        inverted.release();
+        flipSeededAreasSmallerThan(true, minArea, distanceField, distanceLimit);
+        distanceField.release();
+        applySymmetry(symmetrySettings.getSpawnSymmetry());
+        VisualDebugger.visualizeMask(this);
+        return this;
+    }
+
+    // only seeded areas flip so the result matches the per seed flood fills
+    private void flipSeededAreasSmallerThan(boolean value, int minArea, FloatMask squaredDistanceField, float distanceLimit) {
+        ComponentLabels components = new ComponentLabels(this, value);
+        boolean[] seeded = new boolean[components.getCount()];
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                int label = components.getLabel(x, y);
+                if (label >= 0 && !seeded[label] && components.getArea(label) < minArea) {
+                    float squaredDistance = squaredDistanceField.get(x, y);
+                    seeded[label] = squaredDistance < distanceLimit && squaredDistance > 0f && squaredDistanceField.isLocalMax(x, y);
                 }
             }
         }
-        LinkedList<Vector2f> locList = new LinkedList<>(locHash);
-        while (locHash.size() > 0) {
-            Vector2f location = locList.removeFirst();
-            Set<Vector2f> coordinates = getShapeCoordinates(location, minArea);
-            if (coordinates.size() < minArea) {
-                fillCoordinates(coordinates, true);
-            }
-            locHash.removeAll(coordinates);
-            locList = new LinkedList<>(locHash);
-        }
-        locHash = new LinkedHashSet<>();
-        distanceField = copy().invert().getDistanceField();
-        for (int x = 0; x < getSize(); x++) {
-            for (int y = 0; y < getSize(); y++) {
-                float distance = distanceField.get(x, y);
-                if (distance < StrictMath.sqrt(minArea) && distance > 0f && distanceField.isLocalMax(x, y)) {
-                    locHash.add(new Vector2f(x, y));
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                int label = components.getLabel(x, y);
+                if (label >= 0 && seeded[label]) {
+                    setBit(x, y, !value);
                 }
             }
         }
-        locList = new LinkedList<>(locHash);
-        while (locHash.size() > 0) {
-            Vector2f location = locList.removeFirst();
-            Set<Vector2f> coordinates = getShapeCoordinates(location, minArea);
-            if (coordinates.size() < minArea) {
-                fillCoordinates(coordinates, false);
-            }
-            locHash.removeAll(coordinates);
-            locList = new LinkedList<>(locHash);
-        }
-        applySymmetry(symmetrySettings.getSpawnSymmetry());
-        VisualDebugger.visualizeMask(this);
-        return this;
+        components.release();
     }
 
     public BinaryMask removeAreasBiggerThan(int maxArea) {
-        minus(copy().removeAreasSmallerThan(maxArea));
+        BinaryMask smallAreas = copy().removeAreasSmallerThan(maxArea);
+        minus(smallAreas);
+        smallAreas.release();
         applySymmetry(symmetrySettings.getSpawnSymmetry());
         VisualDebugger.visualizeMask(this);
         return this;
@@ -837,99 +1164,34 @@ public strictfp class BinaryMask extends Mask<Boolean> {
     }
 
     public FloatMask getDistanceField() {
+        FloatMask distanceField = getSquaredDistanceField();
+        distanceField.sqrt();
+        return distanceField;
+    }
+
+    public FloatMask getSquaredDistanceField() {
         FloatMask distanceField = new FloatMask(getSize(), random.nextLong(), symmetrySettings);
         distanceField.init(this, getSize() * getSize(), 0f);
-        for (int i = 0; i < getSize(); i++) {
-            ArrayList<Vector2f> vertices = new ArrayList<>();
-            ArrayList<Vector2f> intersections = new ArrayList<>();
-            int index = 0;
-            vertices.add(new Vector2f(0, distanceField.get(i, 0)));
-            intersections.add(new Vector2f(Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY));
-            intersections.add(new Vector2f(Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY));
-            for (int j = 1; j < getSize(); j++) {
-                Vector2f current = new Vector2f(j, distanceField.get(i, j));
-                Vector2f vertex = vertices.get(index);
-                float xIntersect = ((current.y + current.x * current.x) - (vertex.y + vertex.x * vertex.x)) / (2 * current.x - 2 * vertex.x);
-                while (xIntersect <= intersections.get(index).x) {
-                    index -= 1;
-                    vertex = vertices.get(index);
-                    xIntersect = ((current.y + current.x * current.x) - (vertex.y + vertex.x * vertex.x)) / (2 * current.x - 2 * vertex.x);
-                }
-                index += 1;
-                if (index < vertices.size()) {
-                    vertices.set(index, current);
-                } else {
-                    vertices.add(current);
-                }
-                if (index < intersections.size() - 1) {
-                    intersections.set(index, new Vector2f(xIntersect, Float.POSITIVE_INFINITY));
-                    intersections.set(index + 1, new Vector2f(Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY));
-                } else {
-                    intersections.set(index, new Vector2f(xIntersect, Float.POSITIVE_INFINITY));
-                    intersections.add(new Vector2f(Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY));
-                }
-            }
-            index = 0;
-            for (int j = 0; j < getSize(); j++) {
-                while (intersections.get(index + 1).x < j) {
-                    index += 1;
-                }
-                Vector2f vertex = vertices.get(index);
-                float dx = j - vertex.x;
-                distanceField.set(i, j, dx * dx + vertex.y);
-            }
+        DistanceTransform.transform(distanceField.getMask(), getSize());
+        return distanceField;
+    }
+
+    // a squared field value is below the returned limit exactly when the distance field value is below distance
+    private static float getSquaredDistanceLimit(double distance) {
+        long limit = (long) StrictMath.max(0, StrictMath.floor(distance * distance) - 1);
+        while (limit > 0 && (float) StrictMath.sqrt(limit - 1) >= distance) {
+            limit--;
         }
-        for (int i = 0; i < getSize(); i++) {
-            ArrayList<Vector2f> vertices = new ArrayList<>();
-            ArrayList<Vector2f> intersections = new ArrayList<>();
-            int index = 0;
-            vertices.add(new Vector2f(0, distanceField.get(0, i)));
-            intersections.add(new Vector2f(Float.NEGATIVE_INFINITY, Float.MAX_VALUE));
-            intersections.add(new Vector2f(Float.POSITIVE_INFINITY, Float.MAX_VALUE));
-            for (int j = 1; j < getSize(); j++) {
-                Vector2f current = new Vector2f(j, distanceField.get(j, i));
-                Vector2f vertex = vertices.get(index);
-                float xIntersect = ((current.y + current.x * current.x) - (vertex.y + vertex.x * vertex.x)) / (2 * current.x - 2 * vertex.x);
-                while (xIntersect <= intersections.get(index).x) {
-                    index -= 1;
-                    vertex = vertices.get(index);
-                    xIntersect = ((current.y + current.x * current.x) - (vertex.y + vertex.x * vertex.x)) / (2 * current.x - 2 * vertex.x);
-                }
-                index += 1;
-                if (index < vertices.size()) {
-                    vertices.set(index, current);
-                } else {
-                    vertices.add(current);
-                }
-                if (index < intersections.size() - 1) {
-                    intersections.set(index, new Vector2f(xIntersect, Float.POSITIVE_INFINITY));
-                    intersections.set(index + 1, new Vector2f(Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY));
-                } else {
-                    intersections.set(index, new Vector2f(xIntersect, Float.POSITIVE_INFINITY));
-                    intersections.add(new Vector2f(Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY));
-                }
-            }
-            index = 0;
-            for (int j = 0; j < getSize(); j++) {
-                while (intersections.get(index + 1).x < j) {
-                    index += 1;
-                }
-                Vector2f vertex = vertices.get(index);
-                float dx = j - vertex.x;
-                distanceField.set(j, i, dx * dx + vertex.y);
-            }
+        while ((float) StrictMath.sqrt(limit) < distance) {
+            limit++;
         }
-        distanceField.sqrt();
-        return distanceField;
+        return limit;
     }
 
     public int getCount() {
         int cellCount = 0;
-        for (int y = 0; y < getSize(); y++) {
-            for (int x = 0; x < getSize(); x++) {
-                if (get(x, y))
-                    cellCount++;
-            }
+        for (long word : mask) {
+            cellCount += Long.bitCount(word);
         }
         return cellCount;
     }
@@ -959,52 +1221,112 @@ public strictfp class BinaryMask extends Mask<Boolean> {
     }
 
     public LinkedHashSet<Vector2f> getSpacedCoordinates(float radius, int spacing) {
-        LinkedHashSet<Vector2f> coordinates = getAllCoordinates(spacing);
-        LinkedList<Vector2f> coordinateList = new LinkedList<>(coordinates);
-        LinkedHashSet<Vector2f> chosenCoordinates = new LinkedHashSet<>();
-        while (coordinates.size() > 0) {
-            Vector2f location = coordinateList.removeFirst();
-            chosenCoordinates.add(location);
-            coordinates.removeIf((loc) -> location.getDistance(loc) < radius);
-            coordinateList = new LinkedList<>(coordinates);
-        }
-        return chosenCoordinates;
+        return getSpacedCoordinates(radius, spacing, false, false);
     }
 
     public LinkedHashSet<Vector2f> getSpacedCoordinatesEqualTo(boolean value, float radius, int spacing) {
-        LinkedHashSet<Vector2f> coordinates = getAllCoordinatesEqualTo(value, spacing);
-        LinkedList<Vector2f> coordinateList = new LinkedList<>(coordinates);
+        return getSpacedCoordinates(radius, spacing, true, value);
+    }
+
+    // same picks as repeatedly taking the first coordinate left and dropping those within radius
+    private LinkedHashSet<Vector2f> getSpacedCoordinates(float radius, int spacing, boolean filtered, boolean value) {
         LinkedHashSet<Vector2f> chosenCoordinates = new LinkedHashSet<>();
-        while (coordinates.size() > 0) {
-            Vector2f location = coordinateList.removeFirst();
-            chosenCoordinates.add(location);
-            coordinates.removeIf((loc) -> location.getDistance(loc) < radius);
-            coordinateList = new LinkedList<>(coordinates);
+        int bucketSize = radius > 1 ? (int) StrictMath.min(size, StrictMath.ceil(radius)) : 1;
+        int bucketsPerSide = size / bucketSize + 1;
+        int[] bucketHeads = new int[bucketsPerSide * bucketsPerSide];
+        Arrays.fill(bucketHeads, -1);
+        int[] chosenX = new int[64];
+        int[] chosenY = new int[64];
+        int[] nextInBucket = new int[64];
+        int chosenCount = 0;
+        for (int x = 0; x < size; x += spacing) {
+            for (int y = 0; y < size; y += spacing) {
+                if (filtered && getBit(x, y) != value) {
+                    continue;
+                }
+                int bucketX = x / bucketSize;
+                int bucketY = y / bucketSize;
+                boolean spaced = true;
+                for (int neighbourX = StrictMath.max(0, bucketX - 1); spaced && neighbourX <= StrictMath.min(bucketsPerSide - 1, bucketX + 1); neighbourX++) {
+                    for (int neighbourY = StrictMath.max(0, bucketY - 1); spaced && neighbourY <= StrictMath.min(bucketsPerSide - 1, bucketY + 1); neighbourY++) {
+                        for (int chosen = bucketHeads[neighbourX * bucketsPerSide + neighbourY]; spaced && chosen >= 0; chosen = nextInBucket[chosen]) {
+                            float dx = chosenX[chosen] - x;
+                            float dy = chosenY[chosen] - y;
+                            spaced = !((float) StrictMath.sqrt(dx * dx + dy * dy) < radius);
+                        }
+                    }
+                }
+                if (!spaced) {
+                    continue;
+                }
+                if (chosenCount == chosenX.length) {
+                    chosenX = Arrays.copyOf(chosenX, chosenCount * 2);
+                    chosenY = Arrays.copyOf(chosenY, chosenCount * 2);
+                    nextInBucket = Arrays.copyOf(nextInBucket, chosenCount * 2);
+                }
+                int bucket = bucketX * bucketsPerSide + bucketY;
+                chosenX[chosenCount] = x;
+                chosenY[chosenCount] = y;
+                nextInBucket[chosenCount] = bucketHeads[bucket];
+                bucketHeads[bucket] = chosenCount++;
+                chosenCoordinates.add(new Vector2f(x, y));
+            }
         }
         return chosenCoordinates;
     }
 
+    // cells are ranked in index order so each pick draws the same cell as picking from a list of them
     public LinkedHashSet<Vector2f> getRandomCoordinates(float minSpacing) {
-        LinkedHashSet<Vector2f> coordinates = getAllCoordinatesEqualTo(true, 1);
-        ArrayList<Vector2f> coordinateArray = new ArrayList<>(coordinates);
+        RankedCellSet candidates = new RankedCellSet(mask, size * size);
         LinkedHashSet<Vector2f> chosenCoordinates = new LinkedHashSet<>();
-        while (coordinates.size() > 0) {
-            Vector2f location = coordinateArray.get(random.nextInt(coordinateArray.size()));
+        while (candidates.size() > 0) {
+            int index = candidates.get(random.nextInt(candidates.size()));
+            Vector2f location = new Vector2f(index / size, index % size);
             chosenCoordinates.add(location);
-            coordinates.removeIf((loc) -> location.getDistance(loc) < minSpacing);
+            removeCandidatesWithin(candidates, location, minSpacing);
             ArrayList<SymmetryPoint> symmetryPoints = getSymmetryPoints(location);
-            symmetryPoints.forEach(symmetryPoint -> coordinates.removeIf((loc) -> symmetryPoint.getLocation().getDistance(loc) < minSpacing));
-            coordinateArray = new ArrayList<>(coordinates);
+            symmetryPoints.forEach(symmetryPoint -> removeCandidatesWithin(candidates, symmetryPoint.getLocation(), minSpacing));
         }
+        candidates.release();
         return chosenCoordinates;
     }
 
+    // a cell of margin so float rounding in the distance never reaches a cell outside the box
+    private void removeCandidatesWithin(RankedCellSet candidates, Vector2f center, float radius) {
+        int minX = (int) StrictMath.max(0, StrictMath.floor(center.x - radius) - 1);
+        int maxX = (int) StrictMath.min(size - 1, StrictMath.ceil(center.x + radius) + 1);
+        int minY = (int) StrictMath.max(0, StrictMath.floor(center.y - radius) - 1);
+        int maxY = (int) StrictMath.min(size - 1, StrictMath.ceil(center.y + radius) + 1);
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                int index = x * size + y;
+                if (candidates.contains(index)) {
+                    float dx = center.x - x;
+                    float dy = center.y - y;
+                    if ((float) StrictMath.sqrt(dx * dx + dy * dy) < radius) {
+                        candidates.remove(index);
+                    }
+                }
+            }
+        }
+    }
+
     public Vector2f getRandomPosition() {
-        LinkedHashSet<Vector2f> coordinates = getAllCoordinatesEqualTo(true, 1);
-        if (coordinates.size() == 0)
+        int cellCount = getCount();
+        if (cellCount == 0)
             return null;
-        int cell = random.nextInt(coordinates.size());
-        return (Vector2f) coordinates.toArray()[cell];
+        int rank = random.nextInt(cellCount);
+        int word = 0;
+        while (Long.bitCount(mask[word]) <= rank) {
+            rank -= Long.bitCount(mask[word]);
+            word++;
+        }
+        long bits = mask[word];
+        for (int i = 0; i < rank; i++) {
+            bits &= bits - 1;
+        }
+        int index = (word << 6) + Long.numberOfTrailingZeros(bits);
+        return new Vector2f(index / size, index % size);
     }
 
     // --------------------------------------------------
@@ -1024,20 +1346,8 @@ public strictfp class BinaryMask extends Mask<Boolean> {
         out.close();
     }
 
-    public String toHash() throws NoSuchAlgorithmException {
-        ByteBuffer bytes = ByteBuffer.allocate(getSize() * getSize());
-        for (int x = getMinXBound(symmetrySettings.getSpawnSymmetry()); x < getMaxXBound(symmetrySettings.getSpawnSymmetry()); x++) {
-            for (int y = getMinYBound(x, symmetrySettings.getSpawnSymmetry()); y < getMaxYBound(x, symmetrySettings.getSpawnSymmetry()); y++) {
-                byte b = get(x, y) ? (byte) 1 : 0;
-                bytes.put(b);
-            }
-        }
-        byte[] data = MessageDigest.getInstance("MD5").digest(bytes.array());
-        StringBuilder stringBuilder = new StringBuilder();
-        for (byte datum : data) {
-            stringBuilder.append(String.format("%02x", datum));
-        }
-        return stringBuilder.toString();
+    public String toHash() {
+        return ContentHash.toHex(ContentHash.hash(mask, mask.length) * 31 + size);
     }
 
     public void show() {
@@ -0,0 +1,141 @@
+package map;
+
+import util.BufferPool;
+import util.KernelExecutor;
+
+import static util.KernelExecutor.Access.POINTWISE;
+import static util.KernelExecutor.Access.STENCIL;
+
+/**
+ * Box window sums for smooth and spike. Cell values are whole numbers (bits, or floats scaled and rounded) summed in
+ * longs, so the summed area table and the separable running sums give exactly the same window sums and the cheaper
+ * one can be picked freely. The tables are borrowed from the buffer pool, so repeated calls on one mask size reuse
+ * the same arrays instead of allocating a fresh grid each time.
+ */
+strictfp class BoxFilter {
+
+    /**
+     * Each band of the separable pass first sums the 2 * radius + 1 rows around its start, past this share of the
+     * grid that setup outweighs the summed area table, which costs the same for every radius
+     */
+    private static final int SEPARABLE_MAX_RADIUS_FRACTION = 16;
+
+    @FunctionalInterface
+    interface CellSource {
+        long get(int index);
+    }
+
+    @FunctionalInterface
+    interface WindowRowConsumer {
+        /**
+         * Receives the window sums of every cell in row x, windowSums[y] covers the window centred on x, y
+         */
+        void accept(int x, long[] windowSums);
+    }
+
+    /**
+     * The separable pass computes every cell, so it only pays off when all cells are wanted and the radius is small
+     */
+    static boolean isSeparableCheaper(int size, int radius) {
+        return radius <= size / SEPARABLE_MAX_RADIUS_FRACTION;
+    }
+
+    static int getArea(int size, int radius, int x, int y) {
+        int xLeft = StrictMath.max(0, x - radius);
+        int xRight = StrictMath.min(size - 1, x + radius);
+        int yUp = StrictMath.max(0, y - radius);
+        int yDown = StrictMath.min(size - 1, y + radius);
+        return (xRight - xLeft + 1) * (yDown - yUp + 1);
+    }
+
+    /**
+     * Returns a borrowed table where entry x * size + y holds the sum of the cells up to and including x, y.
+     * The caller releases it to the buffer pool
+     */
+    static long[] getSummedAreaTable(int size, CellSource source) {
+        long[] table = BufferPool.borrowLongs(size * size);
+        for (int x = 0; x < size; x++) {
+            long rowSum = 0;
+            int row = x * size;
+            for (int y = 0; y < size; y++) {
+                rowSum += source.get(row + y);
+                table[row + y] = x > 0 ? table[row - size + y] + rowSum : rowSum;
+            }
+        }
+        return table;
+    }
+
+    static long getWindowSum(long[] table, int size, int radius, int x, int y) {
+        int xLeft = StrictMath.max(0, x - radius);
+        int xRight = StrictMath.min(size - 1, x + radius);
+        int yUp = StrictMath.max(0, y - radius);
+        int yDown = StrictMath.min(size - 1, y + radius);
+        long countA = xLeft > 0 && yUp > 0 ? table[(xLeft - 1) * size + yUp - 1] : 0;
+        long countB = yUp > 0 ? table[xRight * size + yUp - 1] : 0;
+        long countC = xLeft > 0 ? table[(xLeft - 1) * size + yDown] : 0;
+        long countD = table[xRight * size + yDown];
+        return countD + countA - countB - countC;
+    }
+
+    /**
+     * First separable pass, returns a borrowed grid where entry x * size + y holds the sum of row x from y - radius
+     * to y + radius. The caller releases it to the buffer pool
+     */
+    static long[] getRowWindowSums(int size, int radius, CellSource source) {
+        long[] rowSums = BufferPool.borrowLongs(size * size);
+        KernelExecutor.forEachRow(size, POINTWISE, (start, end) -> {
+            for (int x = start; x < end; x++) {
+                int row = x * size;
+                long sum = 0;
+                for (int y = 0; y < StrictMath.min(radius, size); y++) {
+                    sum += source.get(row + y);
+                }
+                for (int y = 0; y < size; y++) {
+                    if (y + radius < size) {
+                        sum += source.get(row + y + radius);
+                    }
+                    if (y - radius - 1 >= 0) {
+                        sum -= source.get(row + y - radius - 1);
+                    }
+                    rowSums[row + y] = sum;
+                }
+            }
+        });
+        return rowSums;
+    }
+
+    /**
+     * Second separable pass, slides a window of rows down the row window sums and hands every row's box sums to the
+     * consumer. Bands start at multiples of alignment and the consumer may only write the row it is given
+     */
+    static void forEachWindowRow(int size, int radius, long[] rowSums, int alignment, WindowRowConsumer consumer) {
+        KernelExecutor.forEachRow(size, alignment, STENCIL, radius, (start, end) -> {
+            long[] windowSums = BufferPool.borrowLongs(size);
+            for (int x = StrictMath.max(0, start - radius - 1); x < StrictMath.min(size, start + radius); x++) {
+                addRow(windowSums, rowSums, x * size, size);
+            }
+            for (int x = start; x < end; x++) {
+                if (x + radius < size) {
+                    addRow(windowSums, rowSums, (x + radius) * size, size);
+                }
+                if (x - radius - 1 >= 0) {
+                    subtractRow(windowSums, rowSums, (x - radius - 1) * size, size);
+                }
+                consumer.accept(x, windowSums);
+            }
+            BufferPool.release(windowSums);
+        });
+    }
+
+    private static void addRow(long[] windowSums, long[] rowSums, int row, int size) {
+        for (int y = 0; y < size; y++) {
+            windowSums[y] += rowSums[row + y];
+        }
+    }
+
+    private static void subtractRow(long[] windowSums, long[] rowSums, int row, int size) {
+        for (int y = 0; y < size; y++) {
+            windowSums[y] -= rowSums[row + y];
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package map;
+
+import lombok.Getter;
+import util.BufferPool;
+import util.Vector2f;
+
+import java.util.Arrays;
+
+/**
+ * Labels the four connected areas of cells with one value in a binary mask with two passes and a union find.
+ * The first pass gives every cell the provisional label of its upper or left neighbour and joins the two when both
+ * are set, the second resolves each provisional label to its root and numbers the areas in the order their first
+ * cell is met, gathering the area, bounding box and centroid of every label on the way.
+ * Cells with the other value have label -1.
+ */
+public strictfp class ComponentLabels {
+
+    @Getter
+    private final int size;
+    @Getter
+    private final int count;
+    @Getter
+    private int[] labels;
+    private final int[] areas;
+    private final int[] minX;
+    private final int[] maxX;
+    private final int[] minY;
+    private final int[] maxY;
+    private final long[] sumX;
+    private final long[] sumY;
+
+    public ComponentLabels(BinaryMask mask, boolean value) {
+        size = mask.getSize();
+        int cellCount = size * size;
+        labels = BufferPool.borrowInts(cellCount);
+        // a new label needs its upper and left neighbour to differ, which bounds the provisional labels
+        int[] parents = BufferPool.borrowInts((cellCount + size) / 2 + 2);
+        int provisionalCount = 0;
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                int index = x * size + y;
+                if (mask.getBit(index) != value) {
+                    labels[index] = -1;
+                    continue;
+                }
+                int upLabel = x > 0 ? labels[index - size] : -1;
+                int leftLabel = y > 0 ? labels[index - 1] : -1;
+                if (upLabel < 0 && leftLabel < 0) {
+                    parents[provisionalCount] = provisionalCount;
+                    labels[index] = provisionalCount++;
+                } else if (upLabel < 0) {
+                    labels[index] = leftLabel;
+                } else if (leftLabel < 0) {
+                    labels[index] = upLabel;
+                } else {
+                    labels[index] = union(parents, upLabel, leftLabel);
+                }
+            }
+        }
+
+        int[] finalLabels = BufferPool.borrowInts(provisionalCount);
+        int labelCount = 0;
+        for (int i = 0; i < provisionalCount; i++) {
+            int root = find(parents, i);
+            finalLabels[i] = root == i ? labelCount++ : finalLabels[root];
+        }
+        BufferPool.release(parents);
+        count = labelCount;
+        areas = new int[count];
+        minX = new int[count];
+        maxX = new int[count];
+        minY = new int[count];
+        maxY = new int[count];
+        sumX = new long[count];
+        sumY = new long[count];
+        Arrays.fill(minX, size);
+        Arrays.fill(minY, size);
+        Arrays.fill(maxX, -1);
+        Arrays.fill(maxY, -1);
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                int index = x * size + y;
+                if (labels[index] < 0) {
+                    continue;
+                }
+                int label = finalLabels[labels[index]];
+                labels[index] = label;
+                areas[label]++;
+                minX[label] = StrictMath.min(minX[label], x);
+                maxX[label] = StrictMath.max(maxX[label], x);
+                minY[label] = StrictMath.min(minY[label], y);
+                maxY[label] = StrictMath.max(maxY[label], y);
+                sumX[label] += x;
+                sumY[label] += y;
+            }
+        }
+        BufferPool.release(finalLabels);
+    }
+
+    /**
+     * Joins the sets of both labels under the smaller root, which is the label the set was first met with
+     */
+    private static int union(int[] parents, int label, int otherLabel) {
+        int root = find(parents, label);
+        int otherRoot = find(parents, otherLabel);
+        if (root < otherRoot) {
+            parents[otherRoot] = root;
+            return root;
+        }
+        parents[root] = otherRoot;
+        return otherRoot;
+    }
+
+    private static int find(int[] parents, int label) {
+        int root = label;
+        while (parents[root] != root) {
+            root = parents[root];
+        }
+        while (parents[label] != root) {
+            int next = parents[label];
+            parents[label] = root;
+            label = next;
+        }
+        return root;
+    }
+
+    public int getLabel(int x, int y) {
+        return labels[x * size + y];
+    }
+
+    public int getArea(int label) {
+        return areas[label];
+    }
+
+    public Vector2f getCentroid(int label) {
+        return new Vector2f((float) sumX[label] / areas[label], (float) sumY[label] / areas[label]);
+    }
+
+    public int getMinX(int label) {
+        return minX[label];
+    }
+
+    public int getMaxX(int label) {
+        return maxX[label];
+    }
+
+    public int getMinY(int label) {
+        return minY[label];
+    }
+
+    public int getMaxY(int label) {
+        return maxY[label];
+    }
+
+    /**
+     * Returns the label grid to the buffer pool, the per label statistics stay readable
+     */
+    public void release() {
+        BufferPool.release(labels);
+        labels = null;
+    }
+}
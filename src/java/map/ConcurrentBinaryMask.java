@@ -1,13 +1,14 @@
 package map;
 
 import lombok.Getter;
-import util.Pipeline;
+import util.PipelineContext;
 import util.Util;
 
 import java.nio.file.Path;
-import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
 
 @Getter
 public strictfp class ConcurrentBinaryMask extends ConcurrentMask<BinaryMask> {
@@ -15,47 +16,58 @@ public strictfp class ConcurrentBinaryMask extends ConcurrentMask<BinaryMask> {
     private final String name;
     private BinaryMask binaryMask;
 
-    public ConcurrentBinaryMask(int size, Long seed, SymmetrySettings symmetrySettings, String name) {
-        super(seed);
+    public ConcurrentBinaryMask(int size, Long seed, SymmetrySettings symmetrySettings, String name, PipelineContext pipeline) {
+        super(seed, pipeline);
         this.binaryMask = new BinaryMask(size, seed, symmetrySettings);
         this.name = name;
         this.symmetrySettings = this.binaryMask.getSymmetrySettings();
 
-        Pipeline.add(this, Collections.emptyList(), Arrays::asList);
+        pipeline.add(this, Collections.emptyList(), Arrays::asList);
     }
 
     public ConcurrentBinaryMask(ConcurrentBinaryMask mask, Long seed, String name) {
-        super(seed);
+        super(seed, mask.getPipeline());
         this.name = name;
         this.binaryMask = new BinaryMask(1, seed, mask.getSymmetrySettings());
 
-        if (name.equals("mocked")) {
-            this.binaryMask = new BinaryMask(mask.getBinaryMask(), seed);
-        } else {
-            Pipeline.add(this, Collections.singletonList(mask), res ->
-                    this.binaryMask.setSize(((ConcurrentBinaryMask) res.get(0)).getBinaryMask().getSize()).combine(new BinaryMask(((ConcurrentBinaryMask) res.get(0)).getBinaryMask(), seed)));
-        }
+        pipeline.add(this, Collections.singletonList(mask), res ->
+                this.binaryMask.setSize(((ConcurrentBinaryMask) res.get(0)).getBinaryMask().getSize()).combine(new BinaryMask(((ConcurrentBinaryMask) res.get(0)).getBinaryMask(), seed)));
         this.symmetrySettings = mask.getSymmetrySettings();
     }
 
-    public ConcurrentBinaryMask(BinaryMask mask, Long seed, String name) {
-        super(seed);
+    public ConcurrentBinaryMask(BinaryMask mask, Long seed, String name, PipelineContext pipeline) {
+        super(seed, pipeline);
         this.name = name;
         this.binaryMask = new BinaryMask(mask, seed);
         this.symmetrySettings = mask.getSymmetrySettings();
     }
 
     public ConcurrentBinaryMask(ConcurrentFloatMask mask, float threshold, Long seed, String name) {
-        super(seed);
+        super(seed, mask.getPipeline());
         this.name = name;
         this.binaryMask = new BinaryMask(1, seed, mask.getSymmetrySettings());
 
-        if (name.equals("mocked")) {
-            this.binaryMask = new BinaryMask(mask.getFloatMask(), threshold, seed);
-        } else {
-            Pipeline.add(this, Collections.singletonList(mask), res ->
-                    this.binaryMask.setSize(((ConcurrentFloatMask) res.get(0)).getFloatMask().getSize()).combine(new BinaryMask(((ConcurrentFloatMask) res.get(0)).getFloatMask(), threshold, seed)));
-        }
+        pipeline.add(this, Collections.singletonList(mask), res ->
+                this.binaryMask.setSize(((ConcurrentFloatMask) res.get(0)).getFloatMask().getSize()).combine(new BinaryMask(((ConcurrentFloatMask) res.get(0)).getFloatMask(), threshold, seed)));
+        this.symmetrySettings = mask.getSymmetrySettings();
+    }
+
+    /**
+     * A mask set by an entry of its own over the dependencies, from the BinaryMask the producer returns
+     */
+    ConcurrentBinaryMask(List<ConcurrentMask> dependencies, Long seed, SymmetrySettings symmetrySettings, String name, PipelineContext pipeline, Function<List<ConcurrentMask>, BinaryMask> producer) {
+        super(seed, pipeline);
+        this.name = name;
+        this.binaryMask = new BinaryMask(1, seed, symmetrySettings);
+        this.symmetrySettings = symmetrySettings;
+
+        pipeline.add(this, dependencies, res -> this.binaryMask = producer.apply(res));
+    }
+
+    private ConcurrentBinaryMask(ConcurrentBinaryMask mask, BinaryMask snapshot) {
+        super(null, mask.getPipeline());
+        this.name = mask.getName() + "Snapshot";
+        this.binaryMask = snapshot;
         this.symmetrySettings = mask.getSymmetrySettings();
     }
 
@@ -64,205 +76,205 @@ public strictfp class ConcurrentBinaryMask extends ConcurrentMask<BinaryMask> {
     }
 
     public ConcurrentBinaryMask clear() {
-        return Pipeline.add(this, Collections.singletonList(this), res ->
+        return pipeline.add(this, Collections.singletonList(this), res ->
                 this.binaryMask.clear()
         );
     }
 
     public ConcurrentBinaryMask randomize(float density) {
-        return Pipeline.add(this, Collections.singletonList(this), res ->
+        return pipeline.add(this, Collections.singletonList(this), res ->
                 this.binaryMask.randomize(density)
         );
     }
 
     public ConcurrentBinaryMask flipValues(float density) {
-        return Pipeline.add(this, Collections.singletonList(this), res ->
+        return pipeline.add(this, Collections.singletonList(this), res ->
                 this.binaryMask.flipValues(density)
         );
     }
 
     public ConcurrentBinaryMask flipValues(float density, Symmetry symmetry) {
-        return Pipeline.add(this, Collections.singletonList(this), res ->
+        return pipeline.add(this, Collections.singletonList(this), res ->
                 this.binaryMask.flipValues(density, symmetry)
         );
     }
 
     public ConcurrentBinaryMask randomWalk(int numWalkers, int numSteps) {
-        return Pipeline.add(this, Collections.singletonList(this), res ->
+        return pipeline.add(this, Collections.singletonList(this), res ->
                 this.binaryMask.randomWalk(numWalkers, numSteps)
         );
     }
 
     public ConcurrentBinaryMask progressiveWalk(int numWalkers, int numSteps) {
-        return Pipeline.add(this, Collections.singletonList(this), res ->
+        return pipeline.add(this, Collections.singletonList(this), res ->
                 this.binaryMask.progressiveWalk(numWalkers, numSteps)
         );
     }
 
     public ConcurrentBinaryMask invert() {
-        return Pipeline.add(this, Collections.singletonList(this), res ->
+        return pipeline.add(this, Collections.singletonList(this), res ->
                 this.binaryMask.invert()
         );
     }
 
     public ConcurrentBinaryMask setSize(int size) {
-        return Pipeline.add(this, Collections.singletonList(this), res ->
+        return pipeline.add(this, Collections.singletonList(this), res ->
                 this.binaryMask.setSize(size)
         );
     }
 
     public ConcurrentBinaryMask enlarge(int size) {
-        return Pipeline.add(this, Collections.singletonList(this), res ->
+        return pipeline.add(this, Collections.singletonList(this), res ->
                 this.binaryMask.enlarge(size)
         );
     }
 
     public ConcurrentBinaryMask shrink(int size) {
-        return Pipeline.add(this, Collections.singletonList(this), res ->
+        return pipeline.add(this, Collections.singletonList(this), res ->
                 this.binaryMask.shrink(size)
         );
     }
 
     public ConcurrentBinaryMask inflate(float radius) {
-        return Pipeline.add(this, Collections.singletonList(this), res ->
+        return pipeline.add(this, Collections.singletonList(this), res ->
                 this.binaryMask.inflate(radius)
         );
     }
 
     public ConcurrentBinaryMask deflate(float radius) {
-        return Pipeline.add(this, Collections.singletonList(this), res ->
+        return pipeline.add(this, Collections.singletonList(this), res ->
                 this.binaryMask.deflate(radius)
         );
     }
 
     public ConcurrentBinaryMask cutCorners() {
-        return Pipeline.add(this, Collections.singletonList(this), res ->
+        return pipeline.add(this, Collections.singletonList(this), res ->
                 this.binaryMask.cutCorners()
         );
     }
 
     public ConcurrentBinaryMask grow(float strength, Symmetry symmetry, int count) {
-        return Pipeline.add(this, Collections.singletonList(this), res ->
+        return pipeline.add(this, Collections.singletonList(this), res ->
                 this.binaryMask.grow(strength, symmetry, count)
         );
     }
 
     public ConcurrentBinaryMask grow(float strength, Symmetry symmetry) {
-        return Pipeline.add(this, Collections.singletonList(this), res ->
+        return pipeline.add(this, Collections.singletonList(this), res ->
                 this.binaryMask.grow(strength, symmetry)
         );
     }
 
     public ConcurrentBinaryMask grow(float strength) {
-        return Pipeline.add(this, Collections.singletonList(this), res ->
+        return pipeline.add(this, Collections.singletonList(this), res ->
                 this.binaryMask.grow(strength)
         );
     }
 
     public ConcurrentBinaryMask erode(float strength, Symmetry symmetry, int count) {
-        return Pipeline.add(this, Collections.singletonList(this), res ->
+        return pipeline.add(this, Collections.singletonList(this), res ->
                 this.binaryMask.erode(strength, symmetry, count)
         );
     }
 
     public ConcurrentBinaryMask erode(float strength, Symmetry symmetry) {
-        return Pipeline.add(this, Collections.singletonList(this), res ->
+        return pipeline.add(this, Collections.singletonList(this), res ->
                 this.binaryMask.erode(strength, symmetry)
         );
     }
 
     public ConcurrentBinaryMask acid(float strength, float size) {
-        return Pipeline.add(this, Collections.singletonList(this), res ->
+        return pipeline.add(this, Collections.singletonList(this), res ->
                 this.binaryMask.acid(strength, size)
         );
     }
 
     public ConcurrentBinaryMask erode(float strength) {
-        return Pipeline.add(this, Collections.singletonList(this), res ->
+        return pipeline.add(this, Collections.singletonList(this), res ->
                 this.binaryMask.erode(strength)
         );
     }
 
     public ConcurrentBinaryMask outline() {
-        return Pipeline.add(this, Collections.singletonList(this), res ->
+        return pipeline.add(this, Collections.singletonList(this), res ->
                 this.binaryMask.outline()
         );
     }
 
     public ConcurrentBinaryMask smooth(int radius) {
-        return Pipeline.add(this, Collections.singletonList(this), res ->
+        return pipeline.add(this, Collections.singletonList(this), res ->
                 this.binaryMask.smooth(radius)
         );
     }
 
     public ConcurrentBinaryMask smooth(int radius, float density) {
-        return Pipeline.add(this, Collections.singletonList(this), res ->
+        return pipeline.add(this, Collections.singletonList(this), res ->
                 this.binaryMask.smooth(radius, density)
         );
     }
 
     public ConcurrentBinaryMask combine(ConcurrentBinaryMask other) {
-        return Pipeline.add(this, Arrays.asList(this, other), res ->
+        return pipeline.add(this, Arrays.asList(this, other), res ->
                 this.binaryMask.combine(((ConcurrentBinaryMask) res.get(1)).getBinaryMask())
         );
     }
 
     public ConcurrentBinaryMask intersect(ConcurrentBinaryMask other) {
-        return Pipeline.add(this, Arrays.asList(this, other), res ->
+        return pipeline.add(this, Arrays.asList(this, other), res ->
                 this.binaryMask.intersect(((ConcurrentBinaryMask) res.get(1)).getBinaryMask())
         );
     }
 
     public ConcurrentBinaryMask minus(ConcurrentBinaryMask other) {
-        return Pipeline.add(this, Arrays.asList(this, other), res ->
+        return pipeline.add(this, Arrays.asList(this, other), res ->
                 this.binaryMask.minus(((ConcurrentBinaryMask) res.get(1)).getBinaryMask())
         );
     }
 
     public ConcurrentBinaryMask fillCenter(int extent, boolean value) {
-        return Pipeline.add(this, Collections.singletonList(this), res ->
+        return pipeline.add(this, Collections.singletonList(this), res ->
                 this.binaryMask.fillCenter(extent, value)
         );
     }
 
     public ConcurrentBinaryMask fillCircle(float x, float y, float radius, boolean value) {
-        return Pipeline.add(this, Collections.singletonList(this), res ->
+        return pipeline.add(this, Collections.singletonList(this), res ->
                 this.binaryMask.fillCircle(x, y, radius, value)
         );
     }
 
     public ConcurrentBinaryMask fillRect(int x, int y, int width, int height, boolean value) {
-        return Pipeline.add(this, Collections.singletonList(this), res ->
+        return pipeline.add(this, Collections.singletonList(this), res ->
                 this.binaryMask.fillRect(x, y, width, height, value)
         );
     }
 
     public ConcurrentBinaryMask fillParallelogram(int x, int y, int width, int height, int xSlope, int ySlope, boolean value) {
-        return Pipeline.add(this, Collections.singletonList(this), res ->
+        return pipeline.add(this, Collections.singletonList(this), res ->
                 this.binaryMask.fillParallelogram(x, y, width, height, xSlope, ySlope, value)
         );
     }
 
     public ConcurrentBinaryMask fillEdge(int rimWidth, boolean value) {
-        return Pipeline.add(this, Collections.singletonList(this), res ->
+        return pipeline.add(this, Collections.singletonList(this), res ->
                 this.binaryMask.fillEdge(rimWidth, value)
         );
     }
 
     public ConcurrentBinaryMask removeAreasSmallerThan(int minArea) {
-        return Pipeline.add(this, Collections.singletonList(this), res ->
+        return pipeline.add(this, Collections.singletonList(this), res ->
                 this.binaryMask.removeAreasSmallerThan(minArea)
         );
     }
 
     public ConcurrentBinaryMask fillGaps(int minDistance) {
-        return Pipeline.add(this, Collections.singletonList(this), res ->
+        return pipeline.add(this, Collections.singletonList(this), res ->
                 this.binaryMask.fillGaps(minDistance)
         );
     }
 
     public ConcurrentBinaryMask widenGaps(int minDistance) {
-        return Pipeline.add(this, Collections.singletonList(this), res ->
+        return pipeline.add(this, Collections.singletonList(this), res ->
                 this.binaryMask.widenGaps(minDistance)
         );
     }
@@ -274,7 +286,7 @@ public strictfp class ConcurrentBinaryMask extends ConcurrentMask<BinaryMask> {
     }
 
     @Override
-    public String toHash() throws NoSuchAlgorithmException {
+    public String toHash() {
         return binaryMask.toHash();
     }
 
@@ -283,13 +295,23 @@ public strictfp class ConcurrentBinaryMask extends ConcurrentMask<BinaryMask> {
     }
 
     public BinaryMask getFinalMask() {
-        Pipeline.await(this);
+        pipeline.await(this);
         return binaryMask.copy();
     }
 
     @Override
-    public ConcurrentBinaryMask mockClone() {
-        return new ConcurrentBinaryMask(this, 0L, "mocked");
+    public ConcurrentBinaryMask snapshot() {
+        return new ConcurrentBinaryMask(this, binaryMask.view(0L));
+    }
+
+    @Override
+    public void detach() {
+        binaryMask.detach();
+    }
+
+    @Override
+    public void release() {
+        binaryMask.release();
     }
 
     @Override
@@ -1,13 +1,14 @@
 package map;
 
 import lombok.Getter;
-import util.Pipeline;
+import util.PipelineContext;
 import util.Util;
 
 import java.nio.file.Path;
-import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 @Getter
 public strictfp class ConcurrentFloatMask extends ConcurrentMask<FloatMask> {
@@ -15,138 +16,182 @@ public strictfp class ConcurrentFloatMask extends ConcurrentMask<FloatMask> {
     private final String name;
     private FloatMask floatMask;
 
-    public ConcurrentFloatMask(int size, Long seed, SymmetrySettings symmetrySettings, String name) {
-        super(seed);
+    public ConcurrentFloatMask(int size, Long seed, SymmetrySettings symmetrySettings, String name, PipelineContext pipeline) {
+        super(seed, pipeline);
         this.floatMask = new FloatMask(size, seed, symmetrySettings);
         this.name = name;
         this.symmetrySettings = this.floatMask.getSymmetrySettings();
 
-        Pipeline.add(this, Collections.emptyList(), Arrays::asList);
+        pipeline.add(this, Collections.emptyList(), Arrays::asList);
     }
 
     public ConcurrentFloatMask(ConcurrentFloatMask mask, Long seed, String name) {
-        super(seed);
+        super(seed, mask.getPipeline());
         this.name = name;
         this.floatMask = new FloatMask(mask.getSize(), seed, mask.getSymmetrySettings());
 
-        if (name.equals("mocked")) {
-            this.floatMask = new FloatMask(mask.getFloatMask(), seed);
-        } else {
-            Pipeline.add(this, Collections.singletonList(mask), res ->
-                    this.floatMask.setSize(((ConcurrentFloatMask) res.get(0)).getFloatMask().getSize()).add(new FloatMask(((ConcurrentFloatMask) res.get(0)).getFloatMask(), this.floatMask.getRandom().nextLong())));
-        }
+        pipeline.add(this, Collections.singletonList(mask), res ->
+                this.floatMask.setSize(((ConcurrentFloatMask) res.get(0)).getFloatMask().getSize()).add(new FloatMask(((ConcurrentFloatMask) res.get(0)).getFloatMask(), this.floatMask.getRandom().nextLong())));
         this.symmetrySettings = mask.getSymmetrySettings();
     }
 
     public ConcurrentFloatMask(ConcurrentBinaryMask mask, float low, float high, Long seed, String name) {
-        super(seed);
+        super(seed, mask.getPipeline());
         this.name = name;
         this.floatMask = new FloatMask(mask.getSize(), seed, mask.getSymmetrySettings());
 
-        if (name.equals("mocked")) {
-            this.floatMask = new FloatMask(mask.getBinaryMask(), low, high, seed);
-        } else {
-            Pipeline.add(this, Collections.singletonList(mask), res ->
-                    this.floatMask.setSize(((ConcurrentBinaryMask) res.get(0)).getBinaryMask().getSize()).add(new FloatMask(((ConcurrentBinaryMask) res.get(0)).getBinaryMask(), low, high, this.floatMask.getRandom().nextLong())));
-        }
+        pipeline.add(this, Collections.singletonList(mask), res ->
+                this.floatMask.setSize(((ConcurrentBinaryMask) res.get(0)).getBinaryMask().getSize()).add(new FloatMask(((ConcurrentBinaryMask) res.get(0)).getBinaryMask(), low, high, this.floatMask.getRandom().nextLong())));
         this.symmetrySettings = mask.getSymmetrySettings();
     }
 
     public ConcurrentFloatMask init(ConcurrentBinaryMask other, float low, float high) {
-        return Pipeline.add(this, Arrays.asList(this, other), res -> this.floatMask.init(((ConcurrentBinaryMask) res.get(1)).getBinaryMask(), low, high)
+        return pipeline.add(this, Arrays.asList(this, other), res -> this.floatMask.init(((ConcurrentBinaryMask) res.get(1)).getBinaryMask(), low, high)
         );
     }
 
+    private ConcurrentFloatMask(ConcurrentFloatMask mask, FloatMask snapshot) {
+        super(null, mask.getPipeline());
+        this.name = mask.getName() + "Snapshot";
+        this.floatMask = snapshot;
+        this.symmetrySettings = mask.getSymmetrySettings();
+    }
+
     public ConcurrentFloatMask copy() {
         return new ConcurrentFloatMask(this, this.floatMask.getRandom().nextLong(), name + "Copy");
     }
 
     public ConcurrentFloatMask add(ConcurrentFloatMask other) {
-        return Pipeline.add(this, Arrays.asList(this, other), res ->
+        return pipeline.add(this, Arrays.asList(this, other), res ->
                 this.floatMask.add(((ConcurrentFloatMask) res.get(1)).getFloatMask())
         );
     }
 
     public ConcurrentFloatMask add(ConcurrentBinaryMask other, float value) {
-        return Pipeline.add(this, Arrays.asList(this, other), res ->
+        return pipeline.add(this, Arrays.asList(this, other), res ->
                 this.floatMask.add(((ConcurrentBinaryMask) res.get(1)).getBinaryMask(), value)
         );
     }
 
     public ConcurrentFloatMask subtract(ConcurrentFloatMask other) {
-        return Pipeline.add(this, Arrays.asList(this, other), res ->
+        return pipeline.add(this, Arrays.asList(this, other), res ->
                 this.floatMask.subtract(((ConcurrentFloatMask) res.get(1)).getFloatMask())
         );
     }
 
     public ConcurrentFloatMask subtract(ConcurrentBinaryMask other, float value) {
-        return Pipeline.add(this, Arrays.asList(this, other), res ->
+        return pipeline.add(this, Arrays.asList(this, other), res ->
                 this.floatMask.subtract(((ConcurrentBinaryMask) res.get(1)).getBinaryMask(), value)
         );
     }
 
     public ConcurrentFloatMask multiply(float value) {
-        return Pipeline.add(this, Collections.singletonList(this), res ->
+        return pipeline.add(this, Collections.singletonList(this), res ->
                 this.floatMask.multiply(value)
         );
     }
 
     public ConcurrentFloatMask clampMax(float value) {
-        return Pipeline.add(this, Collections.singletonList(this), res ->
+        return pipeline.add(this, Collections.singletonList(this), res ->
                 this.floatMask.clampMax(value)
         );
     }
 
     public ConcurrentFloatMask clampMin(float value) {
-        return Pipeline.add(this, Collections.singletonList(this), res ->
+        return pipeline.add(this, Collections.singletonList(this), res ->
                 this.floatMask.clampMin(value)
         );
     }
 
     public ConcurrentFloatMask threshold(float value) {
-        return Pipeline.add(this, Collections.singletonList(this), res ->
+        return pipeline.add(this, Collections.singletonList(this), res ->
                 this.floatMask.threshold(value)
         );
     }
 
+    /**
+     * Thresholds this mask at all thresholds with one read of it, band i holding the cells at or above thresholds[i].
+     * The first band's entry computes every band, the entries of the others wait on it and take theirs
+     */
+    public ConcurrentBinaryMask[] band(float[] thresholds, long[] seeds, String[] names) {
+        BinaryMask[] results = new BinaryMask[thresholds.length];
+        ConcurrentBinaryMask[] bands = new ConcurrentBinaryMask[thresholds.length];
+        for (int i = 0; i < bands.length; i++) {
+            int band = i;
+            if (i == 0) {
+                bands[i] = new ConcurrentBinaryMask(Collections.singletonList(this), seeds[i], symmetrySettings, names[i], pipeline, res -> {
+                    BinaryMask[] computed = ((ConcurrentFloatMask) res.get(0)).getFloatMask().band(thresholds, seeds);
+                    System.arraycopy(computed, 0, results, 0, computed.length);
+                    return results[0];
+                });
+            } else {
+                bands[i] = new ConcurrentBinaryMask(Collections.singletonList(bands[0]), seeds[i], symmetrySettings, names[i], pipeline, res -> results[band]);
+            }
+        }
+        return bands;
+    }
+
+    /**
+     * Starts recording pointwise ops that {@link PointwiseExpression#evaluate()} adds to the pipeline as one entry
+     */
+    public PointwiseExpression<ConcurrentFloatMask, ConcurrentFloatMask, ConcurrentBinaryMask> lazy() {
+        return new PointwiseExpression<>(expression -> {
+            List<ConcurrentMask> dependencies = new ArrayList<>();
+            dependencies.add(this);
+            expression.getOperands().forEach(operand -> dependencies.add((ConcurrentMask) operand));
+            return pipeline.add(this, dependencies, res -> {
+                List<Mask<?>> operands = new ArrayList<>();
+                for (int i = 1; i < res.size(); i++) {
+                    ConcurrentMask operand = res.get(i);
+                    if (operand instanceof ConcurrentFloatMask) {
+                        operands.add(((ConcurrentFloatMask) operand).getFloatMask());
+                    } else {
+                        operands.add(((ConcurrentBinaryMask) operand).getBinaryMask());
+                    }
+                }
+                return this.floatMask.apply(expression.getSteps(), operands);
+            });
+        });
+    }
+
     public ConcurrentFloatMask maskToHills(ConcurrentBinaryMask other) {
-        return Pipeline.add(this, Arrays.asList(this, other), res ->
+        return pipeline.add(this, Arrays.asList(this, other), res ->
                 this.floatMask.maskToHills(((ConcurrentBinaryMask) res.get(1)).getBinaryMask())
         );
     }
 
     public ConcurrentFloatMask maskToMountains(ConcurrentBinaryMask other) {
-        return Pipeline.add(this, Arrays.asList(this, other), res ->
+        return pipeline.add(this, Arrays.asList(this, other), res ->
                 this.floatMask.maskToMountains(((ConcurrentBinaryMask) res.get(1)).getBinaryMask())
         );
     }
 
     public ConcurrentFloatMask maskToOceanHeights(float underWaterSlope, ConcurrentBinaryMask other) {
-        return Pipeline.add(this, Arrays.asList(this, other), res ->
+        return pipeline.add(this, Arrays.asList(this, other), res ->
                 this.floatMask.maskToOceanHeights(underWaterSlope, ((ConcurrentBinaryMask) res.get(1)).getBinaryMask())
         );
     }
 
     public ConcurrentFloatMask max(ConcurrentFloatMask other) {
-        return Pipeline.add(this, Arrays.asList(this, other), res ->
+        return pipeline.add(this, Arrays.asList(this, other), res ->
                 this.floatMask.max(((ConcurrentFloatMask) res.get(1)).getFloatMask())
         );
     }
 
     public ConcurrentFloatMask smooth(int radius) {
-        return Pipeline.add(this, Collections.singletonList(this), res ->
+        return pipeline.add(this, Collections.singletonList(this), res ->
                 this.floatMask.smooth(radius)
         );
     }
 
     public ConcurrentFloatMask smooth(int radius, ConcurrentBinaryMask limiter) {
-        return Pipeline.add(this, Arrays.asList(this, limiter), res ->
+        return pipeline.add(this, Arrays.asList(this, limiter), res ->
                 this.floatMask.smooth(radius, ((ConcurrentBinaryMask) res.get(1)).getBinaryMask())
         );
     }
 
     public ConcurrentFloatMask gradient() {
-        return Pipeline.add(this, Collections.singletonList(this), res ->
+        return pipeline.add(this, Collections.singletonList(this), res ->
                 this.floatMask.gradient()
         );
     }
@@ -157,7 +202,7 @@ public strictfp class ConcurrentFloatMask extends ConcurrentMask<FloatMask> {
     }
 
     @Override
-    public String toHash() throws NoSuchAlgorithmException {
+    public String toHash() {
         return floatMask.toHash();
     }
 
@@ -166,12 +211,22 @@ public strictfp class ConcurrentFloatMask extends ConcurrentMask<FloatMask> {
     }
 
     public FloatMask getFinalMask() {
-        Pipeline.await(this);
+        pipeline.await(this);
         return floatMask.copy();
     }
 
-    public ConcurrentFloatMask mockClone() {
-        return new ConcurrentFloatMask(this, 0L, "mocked");
+    public ConcurrentFloatMask snapshot() {
+        return new ConcurrentFloatMask(this, floatMask.view(0L));
+    }
+
+    @Override
+    public void detach() {
+        floatMask.detach();
+    }
+
+    @Override
+    public void release() {
+        floatMask.release();
     }
 
     @Override
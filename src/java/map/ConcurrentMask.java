@@ -1,9 +1,9 @@
 package map;
 
 import lombok.Getter;
+import util.PipelineContext;
 
 import java.nio.file.Path;
-import java.security.NoSuchAlgorithmException;
 import java.util.Random;
 
 @Getter
@@ -11,8 +11,10 @@ public strictfp abstract class ConcurrentMask<T extends Mask<?>> {
     protected final Random random;
     protected T mask;
     protected SymmetrySettings symmetrySettings;
+    protected final PipelineContext pipeline;
 
-    public ConcurrentMask(Long seed) {
+    public ConcurrentMask(Long seed, PipelineContext pipeline) {
+        this.pipeline = pipeline;
         if (seed != null) {
             this.random = new Random(seed);
         } else {
@@ -20,7 +22,17 @@ public strictfp abstract class ConcurrentMask<T extends Mask<?>> {
         }
     }
 
-    abstract public ConcurrentMask<T> mockClone();
+    /**
+     * Returns a read only view of the mask as it is now, sharing its cells until {@link #detach()} is called
+     */
+    abstract public ConcurrentMask<T> snapshot();
+
+    /**
+     * Moves the mask onto a private copy of its cells before it is written while snapshots are still being read
+     */
+    abstract public void detach();
+
+    abstract public void release();
 
     abstract int getSize();
 
@@ -28,5 +40,5 @@ public strictfp abstract class ConcurrentMask<T extends Mask<?>> {
 
     abstract public void writeToFile(Path path);
 
-    abstract public String toHash() throws NoSuchAlgorithmException;
+    abstract public String toHash();
 }
@@ -0,0 +1,166 @@
+package map;
+
+import util.BufferPool;
+import util.KernelExecutor;
+
+import static util.KernelExecutor.Access.POINTWISE;
+
+/**
+ * Zero padded 2D convolution of a flat float grid with a kernel centred on each cell, cell x, y receiving the sum of
+ * kernel[i][j] * values[x + c - i][y + c - j] with c half the kernel size. The direct and separable sums run in floats
+ * in kernel order, so they repeat exactly; the FFT path works in doubles on a power of two grid large enough that the
+ * padded result does not wrap, and matches the direct sums to within {@link #FFT_TOLERANCE} of the sum of the absolute
+ * kernel weights times the largest absolute value. Callers opt into it per call where that is close enough.
+ */
+public strictfp class Convolution {
+
+    /**
+     * Relative bound on the difference between the FFT and the direct result, see the class comment
+     */
+    public static final float FFT_TOLERANCE = 1e-5f;
+    /**
+     * The FFT costs about as much as this many direct multiply adds per padded cell and per bit of the padded side,
+     * measured on 257 and 513 cell grids
+     */
+    private static final int FFT_COST_FACTOR = 16;
+
+    public enum Strategy {
+        DIRECT, SEPARABLE, FFT
+    }
+
+    private Convolution() {
+    }
+
+    /**
+     * Picks the cheapest way to convolve a size by size grid with a square kernel: separable when the kernel comes as
+     * its row and column factors, otherwise direct sums unless the FFT is allowed and cheaper for this kernel size
+     */
+    public static Strategy getStrategy(int size, int kernelSize, boolean separable, boolean allowFFT) {
+        if (separable) {
+            return Strategy.SEPARABLE;
+        }
+        if (!allowFFT) {
+            return Strategy.DIRECT;
+        }
+        long paddedSize = FourierTransform.getPaddedLength(size + kernelSize - 1);
+        long directCost = (long) size * size * kernelSize * kernelSize;
+        long fftCost = FFT_COST_FACTOR * paddedSize * paddedSize * Integer.numberOfTrailingZeros((int) paddedSize);
+        return directCost > fftCost ? Strategy.FFT : Strategy.DIRECT;
+    }
+
+    /**
+     * Returns a borrowed grid holding the convolution of values with the kernel, the caller releases it to the buffer pool
+     */
+    static float[] convolve(float[] values, int size, float[] kernel, int kernelSize, boolean allowFFT) {
+        if (getStrategy(size, kernelSize, false, allowFFT) == Strategy.FFT) {
+            return convolveFFT(values, size, kernel, kernelSize);
+        }
+        return convolveDirect(values, size, kernel, kernelSize);
+    }
+
+    static float[] convolveDirect(float[] values, int size, float[] kernel, int kernelSize) {
+        float[] result = BufferPool.borrowFloats(size * size);
+        int center = kernelSize / 2;
+        KernelExecutor.forEachRow(size, POINTWISE, (start, end) -> {
+            for (int x = start; x < end; x++) {
+                for (int y = 0; y < size; y++) {
+                    float sum = 0;
+                    for (int i = StrictMath.max(0, x + center - size + 1); i < StrictMath.min(kernelSize, x + center + 1); i++) {
+                        int row = (x + center - i) * size;
+                        for (int j = StrictMath.max(0, y + center - size + 1); j < StrictMath.min(kernelSize, y + center + 1); j++) {
+                            sum += kernel[i * kernelSize + j] * values[row + y + center - j];
+                        }
+                    }
+                    result[x * size + y] = sum;
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Convolves the rows with the row kernel and then the columns with the column kernel, the same result as the
+     * direct sums with their outer product as kernel up to the order the products are added in
+     */
+    static float[] convolveSeparable(float[] values, int size, float[] rowKernel, float[] columnKernel) {
+        float[] rows = BufferPool.borrowFloats(size * size);
+        int rowCenter = rowKernel.length / 2;
+        KernelExecutor.forEachRow(size, POINTWISE, (start, end) -> {
+            for (int x = start; x < end; x++) {
+                int row = x * size;
+                for (int y = 0; y < size; y++) {
+                    float sum = 0;
+                    for (int j = StrictMath.max(0, y + rowCenter - size + 1); j < StrictMath.min(rowKernel.length, y + rowCenter + 1); j++) {
+                        sum += rowKernel[j] * values[row + y + rowCenter - j];
+                    }
+                    rows[row + y] = sum;
+                }
+            }
+        });
+        float[] result = BufferPool.borrowFloats(size * size);
+        int columnCenter = columnKernel.length / 2;
+        KernelExecutor.forEachRow(size, POINTWISE, (start, end) -> {
+            for (int x = start; x < end; x++) {
+                for (int y = 0; y < size; y++) {
+                    float sum = 0;
+                    for (int i = StrictMath.max(0, x + columnCenter - size + 1); i < StrictMath.min(columnKernel.length, x + columnCenter + 1); i++) {
+                        sum += columnKernel[i] * rows[(x + columnCenter - i) * size + y];
+                    }
+                    result[x * size + y] = sum;
+                }
+            }
+        });
+        BufferPool.release(rows);
+        return result;
+    }
+
+    /**
+     * Packs the values as the real and the kernel as the imaginary part so one forward transform gives both spectra,
+     * which are split apart by their conjugate symmetry, multiplied and transformed back
+     */
+    static float[] convolveFFT(float[] values, int size, float[] kernel, int kernelSize) {
+        FourierTransform plan = FourierTransform.get(FourierTransform.getPaddedLength(size + kernelSize - 1));
+        int length = plan.getLength();
+        double[] real = BufferPool.borrowDoubles(length * length);
+        double[] imaginary = BufferPool.borrowDoubles(length * length);
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                real[x * length + y] = values[x * size + y];
+            }
+        }
+        for (int i = 0; i < kernelSize; i++) {
+            for (int j = 0; j < kernelSize; j++) {
+                imaginary[i * length + j] = kernel[i * kernelSize + j];
+            }
+        }
+        plan.transform(real, imaginary, false);
+        double[] productReal = BufferPool.borrowDoubles(length * length);
+        double[] productImaginary = BufferPool.borrowDoubles(length * length);
+        int mask = length - 1;
+        for (int u = 0; u < length; u++) {
+            for (int v = 0; v < length; v++) {
+                int index = u * length + v;
+                int mirror = ((length - u) & mask) * length + ((length - v) & mask);
+                double valuesReal = (real[index] + real[mirror]) / 2;
+                double valuesImaginary = (imaginary[index] - imaginary[mirror]) / 2;
+                double kernelReal = (imaginary[index] + imaginary[mirror]) / 2;
+                double kernelImaginary = (real[mirror] - real[index]) / 2;
+                productReal[index] = valuesReal * kernelReal - valuesImaginary * kernelImaginary;
+                productImaginary[index] = valuesReal * kernelImaginary + valuesImaginary * kernelReal;
+            }
+        }
+        BufferPool.release(real);
+        BufferPool.release(imaginary);
+        plan.transform(productReal, productImaginary, true);
+        float[] result = BufferPool.borrowFloats(size * size);
+        int center = kernelSize / 2;
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                result[x * size + y] = (float) productReal[(x + center) * length + y + center];
+            }
+        }
+        BufferPool.release(productReal);
+        BufferPool.release(productImaginary);
+        return result;
+    }
+}
@@ -0,0 +1,95 @@
+package map;
+
+import util.BufferPool;
+import util.KernelExecutor;
+
+import static util.KernelExecutor.Access.POINTWISE;
+
+/**
+ * Felzenszwalb's two pass lower envelope transform over a flat float grid. Every line is independent within a pass,
+ * so the rows and then the columns are handed out in bands, each band working in its own borrowed scratch arrays.
+ * The float arithmetic is the one the per vertex version used, so the resulting fields are unchanged.
+ */
+strictfp class DistanceTransform {
+
+    /**
+     * Replaces every value by the smallest value plus squared distance along the rows, then along the columns
+     */
+    static void transform(float[] values, int size) {
+        KernelExecutor.forEachRow(size, POINTWISE, (start, end) -> {
+            Envelope envelope = new Envelope(size);
+            for (int x = start; x < end; x++) {
+                envelope.transformLine(values, x * size, 1);
+            }
+            envelope.release();
+        });
+        // each band owns a range of columns, the bands write disjoint cells of the shared rows
+        KernelExecutor.forEachRow(size, POINTWISE, (start, end) -> {
+            Envelope envelope = new Envelope(size);
+            for (int y = start; y < end; y++) {
+                envelope.transformLine(values, y, size);
+            }
+            envelope.release();
+        });
+    }
+
+    private static strictfp class Envelope {
+        private final int length;
+        private final float[] line;
+        private final float[] vertexX;
+        private final float[] vertexY;
+        private final float[] intersections;
+
+        Envelope(int length) {
+            this.length = length;
+            line = BufferPool.borrowFloats(length);
+            vertexX = BufferPool.borrowFloats(length);
+            vertexY = BufferPool.borrowFloats(length);
+            intersections = BufferPool.borrowFloats(length + 1);
+        }
+
+        void transformLine(float[] values, int offset, int stride) {
+            for (int j = 0; j < length; j++) {
+                line[j] = values[offset + j * stride];
+            }
+            int index = 0;
+            vertexX[0] = 0;
+            vertexY[0] = line[0];
+            intersections[0] = Float.NEGATIVE_INFINITY;
+            intersections[1] = Float.POSITIVE_INFINITY;
+            for (int j = 1; j < length; j++) {
+                float currentX = j;
+                float currentY = line[j];
+                float xIntersect = getIntersection(currentX, currentY, vertexX[index], vertexY[index]);
+                while (xIntersect <= intersections[index]) {
+                    index -= 1;
+                    xIntersect = getIntersection(currentX, currentY, vertexX[index], vertexY[index]);
+                }
+                index += 1;
+                vertexX[index] = currentX;
+                vertexY[index] = currentY;
+                intersections[index] = xIntersect;
+                intersections[index + 1] = Float.POSITIVE_INFINITY;
+            }
+            index = 0;
+            for (int j = 0; j < length; j++) {
+                while (intersections[index + 1] < j) {
+                    index += 1;
+                }
+                float dx = j - vertexX[index];
+                values[offset + j * stride] = dx * dx + vertexY[index];
+            }
+        }
+
+        private static float getIntersection(float currentX, float currentY, float vertexX, float vertexY) {
+            return ((currentY + currentX * currentX) - (vertexY + vertexX * vertexX)) / (2 * currentX - 2 * vertexX);
+        }
+
+        void release() {
+            BufferPool.release(line);
+            BufferPool.release(vertexX);
+            BufferPool.release(vertexY);
+            BufferPool.release(intersections);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package map;
+
+/**
+ * Backend for the flat array loops behind FloatMask arithmetic, thresholds and reductions. Every op covers the
+ * cells from start inclusive to end exclusive. Implementations must give bit for bit the floats the scalar loops give,
+ * map names have to reproduce identical maps whichever backend a machine picks.
+ * The vector backend lives in its own source set built on JDKs that ship the incubating Vector API and is only
+ * picked when that module is present at runtime, set the neroxis.kernels property to scalar or vector to force one.
+ */
+public interface FloatKernels {
+
+    String VECTOR_IMPLEMENTATION = "map.VectorFloatKernels";
+
+    void add(float[] values, int start, int end, float value);
+
+    void add(float[] values, float[] other, int start, int end);
+
+    void subtract(float[] values, float[] other, int start, int end);
+
+    void multiply(float[] values, int start, int end, float value);
+
+    void multiply(float[] values, float[] other, int start, int end);
+
+    void min(float[] values, float[] other, int start, int end);
+
+    void max(float[] values, float[] other, int start, int end);
+
+    void clampMin(float[] values, int start, int end, float value);
+
+    void clampMax(float[] values, int start, int end, float value);
+
+    /**
+     * Sets every value below threshold to zero
+     */
+    void threshold(float[] values, int start, int end, float threshold);
+
+    void sqrt(float[] values, int start, int end);
+
+    /**
+     * Returns the smallest of initial and the values
+     */
+    float min(float[] values, int start, int end, float initial);
+
+    /**
+     * Returns the largest of initial and the values
+     */
+    float max(float[] values, int start, int end, float initial);
+
+    String getName();
+
+    static FloatKernels get() {
+        return Holder.kernels;
+    }
+
+    static FloatKernels getScalar() {
+        return ScalarFloatKernels.INSTANCE;
+    }
+
+    /**
+     * Returns the vector backend, or null when this runtime or build does not have it
+     */
+    static FloatKernels getVector() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            return (FloatKernels) Class.forName(VECTOR_IMPLEMENTATION).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    final class Holder {
+        private static final FloatKernels kernels = select();
+
+        private Holder() {
+        }
+
+        private static FloatKernels select() {
+            String requested = System.getProperty("neroxis.kernels", "");
+            if (!requested.equals("scalar")) {
+                FloatKernels vector = getVector();
+                if (vector != null) {
+                    return vector;
+                }
+                if (requested.equals("vector")) {
+                    System.err.println("Vector kernels requested but jdk.incubator.vector is not available, using scalar kernels");
+                }
+            }
+            return getScalar();
+        }
+    }
+}
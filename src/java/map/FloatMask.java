@@ -4,6 +4,9 @@ import brushes.Brushes;
 import generator.VisualDebugger;
 import lombok.Getter;
 import lombok.SneakyThrows;
+import util.BufferPool;
+import util.ContentHash;
+import util.KernelExecutor;
 import util.Util;
 import util.Vector2f;
 import util.Vector3f;
@@ -13,89 +16,120 @@ import java.awt.image.Raster;
 import java.io.BufferedOutputStream;
 import java.io.DataOutputStream;
 import java.io.FileOutputStream;
-import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.LinkedList;
+import java.util.List;
 
 import static brushes.Brushes.loadBrush;
+import static util.KernelExecutor.Access.POINTWISE;
+import static util.KernelExecutor.Access.STENCIL;
 
 @Getter
 public strictfp class FloatMask extends Mask<Float> {
+    private static final int POINTWISE_CHUNK = 4096;
+    private static final FloatKernels KERNELS = FloatKernels.get();
+
+    private float[] mask;
+    private int size;
 
     public FloatMask(int size, Long seed, SymmetrySettings symmetrySettings) {
         super(seed);
-        this.mask = getEmptyMask(size);
+        this.mask = BufferPool.borrowFloats(size * size);
+        this.size = size;
         this.symmetrySettings = symmetrySettings;
-        for (int y = 0; y < this.getSize(); y++) {
-            for (int x = 0; x < this.getSize(); x++) {
-                this.mask[x][y] = 0f;
-            }
-        }
         VisualDebugger.visualizeMask(this);
     }
 
     public FloatMask(BufferedImage image, Long seed, SymmetrySettings symmetrySettings) {
         super(seed);
-        this.mask = getEmptyMask(image.getHeight());
+        this.size = image.getHeight();
+        this.mask = BufferPool.borrowFloats(size * size);
         Raster imageData = image.getData();
         this.symmetrySettings = symmetrySettings;
-        for (int y = 0; y < this.getSize(); y++) {
-            for (int x = 0; x < this.getSize(); x++) {
-                int[] vals = new int[1];
+        int[] vals = new int[1];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
                 imageData.getPixel(x, y, vals);
-                this.mask[x][y] = vals[0] / 255f;
+                setValueAt(x, y, vals[0] / 255f);
             }
         }
         VisualDebugger.visualizeMask(this);
     }
 
+    private FloatMask(float[] mask, int size, SymmetrySettings symmetrySettings, Long seed) {
+        super(seed);
+        this.mask = mask;
+        this.size = size;
+        this.symmetrySettings = symmetrySettings;
+    }
+
     public FloatMask(FloatMask floatMask, Long seed) {
         super(seed);
-        this.mask = getEmptyMask(floatMask.getSize());
+        this.size = floatMask.size;
+        this.mask = BufferPool.borrowFloats(size * size);
+        System.arraycopy(floatMask.mask, 0, mask, 0, size * size);
         this.symmetrySettings = floatMask.getSymmetrySettings();
-        for (int y = 0; y < floatMask.getSize(); y++) {
-            for (int x = 0; x < floatMask.getSize(); x++) {
-                this.mask[x][y] = floatMask.get(x, y);
-            }
-        }
         VisualDebugger.visualizeMask(this);
     }
 
     public FloatMask(BinaryMask binaryMask, float low, float high, Long seed) {
         super(seed);
-        this.mask = getEmptyMask(binaryMask.getSize());
+        this.size = binaryMask.getSize();
+        this.mask = BufferPool.borrowFloats(size * size);
         this.symmetrySettings = binaryMask.getSymmetrySettings();
-        for (int y = 0; y < getSize(); y++) {
-            for (int x = 0; x < getSize(); x++) {
-                if (binaryMask.get(x, y)) {
-                    set(x, y, high);
-                } else {
-                    set(x, y, low);
-                }
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                mask[x * size + y] = binaryMask.getBit(x, y) ? high : low;
             }
         }
         VisualDebugger.visualizeMask(this);
     }
 
-    protected Float[][] getEmptyMask(int size) {
-        Float[][] maskCopy = new Float[size][size];
-        for (int x = 0; x < size; x++) {
-            for (int y = 0; y < size; y++) {
-                maskCopy[x][y] = 0f;
-            }
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    protected void remap(int size, int[] sourceIndices) {
+        float[] newMask = BufferPool.borrowFloats(size * size);
+        for (int i = 0; i < sourceIndices.length; i++) {
+            newMask[i] = mask[sourceIndices[i]];
         }
-        return maskCopy;
+        BufferPool.release(mask);
+        this.mask = newMask;
+        this.size = size;
     }
 
     @Override
-    public int getSize() {
-        return mask[0].length;
+    protected void copyCells(int[] sources, int[] destinations) {
+        copyCells(mask, sources, destinations);
+    }
+
+    private static void copyCells(float[] values, int[] sources, int[] destinations) {
+        for (int i = 0; i < sources.length; i++) {
+            values[destinations[i]] = values[sources[i]];
+        }
+    }
+
+    @Override
+    void release() {
+        BufferPool.release(mask);
+        mask = null;
+    }
+
+    // shares the cells until detach(), must only be read
+    FloatMask view(Long seed) {
+        return new FloatMask(mask, size, symmetrySettings, seed);
+    }
+
+    void detach() {
+        float[] cells = BufferPool.borrowFloats(size * size);
+        System.arraycopy(mask, 0, cells, 0, size * size);
+        mask = cells;
     }
 
     @Override
@@ -106,34 +140,30 @@ public strictfp class FloatMask extends Mask<Float> {
 
     @Override
     public Float get(Vector2f pos) {
-        return mask[(int) pos.x][(int) pos.y];
+        return getValueAt((int) pos.x, (int) pos.y);
+    }
+
+    public float getValueAt(int x, int y) {
+        return mask[x * size + y];
+    }
+
+    public void setValueAt(int x, int y, float value) {
+        mask[x * size + y] = value;
     }
 
     public float getMin() {
-        float val = Float.MAX_VALUE;
-        for (int y = 0; y < getSize(); y++) {
-            for (int x = 0; x < getSize(); x++) {
-                val = StrictMath.min(val, get(x, y));
-            }
-        }
-        return val;
+        return KERNELS.min(mask, 0, mask.length, Float.MAX_VALUE);
     }
 
     public float getMax() {
-        float val = 0;
-        for (int y = 0; y < getSize(); y++) {
-            for (int x = 0; x < getSize(); x++) {
-                val = StrictMath.max(val, get(x, y));
-            }
-        }
-        return val;
+        return KERNELS.max(mask, 0, mask.length, 0f);
     }
 
     public float getSum() {
         float val = 0;
-        for (int y = 0; y < getSize(); y++) {
-            for (int x = 0; x < getSize(); x++) {
-                val += get(x, y);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                val += mask[x * size + y];
             }
         }
         return val;
@@ -144,28 +174,28 @@ public strictfp class FloatMask extends Mask<Float> {
     }
 
     public boolean isLocalMax(int x, int y) {
-        float value = get(x, y);
-        return ((x > 0 && get(x - 1, y) <= value)
-                && (y > 0 && get(x, y - 1) <= value)
-                && (x < getSize() - 1 && get(x + 1, y) <= value)
-                && (y < getSize() - 1 && get(x, y + 1) <= value)
-                && (get(x - 1, y - 1) <= value)
-                && (get(x + 1, y - 1) <= value)
-                && (get(x + 1, y + 1) <= value)
-                && (get(x + 1, y + 1) <= value));
+        float value = getValueAt(x, y);
+        return ((x > 0 && getValueAt(x - 1, y) <= value)
+                && (y > 0 && getValueAt(x, y - 1) <= value)
+                && (x < size - 1 && getValueAt(x + 1, y) <= value)
+                && (y < size - 1 && getValueAt(x, y + 1) <= value)
+                && (getValueAt(x - 1, y - 1) <= value)
+                && (getValueAt(x + 1, y - 1) <= value)
+                && (getValueAt(x + 1, y + 1) <= value)
+                && (getValueAt(x + 1, y + 1) <= value));
     }
 
     @Override
     public Float get(int x, int y) {
-        return mask[x][y];
+        return getValueAt(x, y);
     }
 
     public boolean isLocal1DMax(int x, int y) {
-        float value = get(x, y);
-        return (((x > 0 && get(x - 1, y) <= value)
-                && (x < getSize() - 1 && get(x + 1, y) <= value))
-                || ((y > 0 && get(x, y - 1) <= value)
-                && (y < getSize() - 1 && get(x, y + 1) <= value)));
+        float value = getValueAt(x, y);
+        return (((x > 0 && getValueAt(x - 1, y) <= value)
+                && (x < size - 1 && getValueAt(x + 1, y) <= value))
+                || ((y > 0 && getValueAt(x, y - 1) <= value)
+                && (y < size - 1 && getValueAt(x, y + 1) <= value)));
     }
 
     public void set(Vector2f location, Float value) {
@@ -181,7 +211,7 @@ public strictfp class FloatMask extends Mask<Float> {
     }
 
     public void add(int x, int y, float value) {
-        mask[x][y] += value;
+        mask[x * size + y] += value;
     }
 
     public void subtract(int x, int y, float value) {
@@ -193,20 +223,16 @@ public strictfp class FloatMask extends Mask<Float> {
     }
 
     public void multiply(int x, int y, float value) {
-        mask[x][y] *= value;
+        mask[x * size + y] *= value;
     }
 
     public FloatMask init(BinaryMask other, float low, float high) {
         if (other.getSize() != getSize()) {
             throw new IllegalArgumentException("Masks not the same size");
         }
-        for (int y = 0; y < getSize(); y++) {
-            for (int x = 0; x < getSize(); x++) {
-                if (other.get(x, y)) {
-                    set(x, y, high);
-                } else {
-                    set(x, y, low);
-                }
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                mask[x * size + y] = other.getBit(x, y) ? high : low;
             }
         }
         VisualDebugger.visualizeMask(this);
@@ -222,18 +248,14 @@ public strictfp class FloatMask extends Mask<Float> {
     }
 
     public void set(int x, int y, Float value) {
-        mask[x][y] = value;
+        setValueAt(x, y, value);
     }
 
     public FloatMask multiply(FloatMask other) {
         if (other.getSize() != getSize()) {
             throw new IllegalArgumentException("Masks not the same size");
         }
-        for (int y = 0; y < getSize(); y++) {
-            for (int x = 0; x < getSize(); x++) {
-                multiply(x, y, other.get(x, y));
-            }
-        }
+        KERNELS.multiply(mask, other.mask, 0, mask.length);
         VisualDebugger.visualizeMask(this);
         return this;
     }
@@ -243,32 +265,34 @@ public strictfp class FloatMask extends Mask<Float> {
     }
 
     public FloatMask clear() {
-        for (int x = 0; x < getSize(); x++) {
-            for (int y = 0; y < getSize(); y++) {
-                set(x, y, 0f);
-            }
-        }
-        applySymmetry();
+        Arrays.fill(mask, 0f);
         VisualDebugger.visualizeMask(this);
         return this;
     }
 
     public FloatMask multiply(float val) {
-        for (int y = 0; y < getSize(); y++) {
-            for (int x = 0; x < getSize(); x++) {
-                multiply(x, y, val);
-            }
-        }
+        KERNELS.multiply(mask, 0, mask.length, val);
         VisualDebugger.visualizeMask(this);
         return this;
     }
 
-    public FloatMask convolve(FloatMask other) {
-        for (int y = 0; y < getSize(); y++) {
-            for (int x = 0; x < getSize(); x++) {
-                multiply(other, x, y, true);
-            }
-        }
+    public FloatMask convolve(FloatMask kernel) {
+        return convolve(kernel, false);
+    }
+
+    // allowFFT lets large kernels through an FFT, only within Convolution.FFT_TOLERANCE of the direct sums
+    public FloatMask convolve(FloatMask kernel, boolean allowFFT) {
+        float[] result = Convolution.convolve(mask, size, kernel.mask, kernel.size, allowFFT);
+        BufferPool.release(mask);
+        mask = result;
+        VisualDebugger.visualizeMask(this);
+        return this;
+    }
+
+    public FloatMask convolve(float[] rowKernel, float[] columnKernel) {
+        float[] result = Convolution.convolveSeparable(mask, size, rowKernel, columnKernel);
+        BufferPool.release(mask);
+        mask = result;
         VisualDebugger.visualizeMask(this);
         return this;
     }
@@ -277,21 +301,13 @@ public strictfp class FloatMask extends Mask<Float> {
         if (other.getSize() != getSize()) {
             throw new IllegalArgumentException("Masks not the same size");
         }
-        for (int y = 0; y < getSize(); y++) {
-            for (int x = 0; x < getSize(); x++) {
-                add(x, y, other.get(x, y));
-            }
-        }
+        KERNELS.add(mask, other.mask, 0, mask.length);
         VisualDebugger.visualizeMask(this);
         return this;
     }
 
     public FloatMask add(float val) {
-        for (int y = 0; y < getSize(); y++) {
-            for (int x = 0; x < getSize(); x++) {
-                add(x, y, val);
-            }
-        }
+        KERNELS.add(mask, 0, mask.length, val);
         VisualDebugger.visualizeMask(this);
         return this;
     }
@@ -300,7 +316,7 @@ public strictfp class FloatMask extends Mask<Float> {
         if (other.getSize() != getSize()) {
             throw new IllegalArgumentException("Masks not the same size");
         }
-        add(other.copy().multiply(-1));
+        KERNELS.subtract(mask, other.mask, 0, mask.length);
         VisualDebugger.visualizeMask(this);
         return this;
     }
@@ -325,15 +341,15 @@ public strictfp class FloatMask extends Mask<Float> {
                 int shiftY = y + offsetY - 1;
                 if (getSize() != size) {
                     if (inBounds(shiftX, shiftY)) {
-                        multiply(shiftX, shiftY, other.get(x, y));
+                        multiply(shiftX, shiftY, other.getValueAt(x, y));
                         ArrayList<SymmetryPoint> symmetryPoints = getSymmetryPoints(shiftX, shiftY);
                         for (SymmetryPoint symmetryPoint : symmetryPoints) {
-                            multiply(symmetryPoint.getLocation(), other.get(x, y));
+                            multiply(symmetryPoint.getLocation(), other.getValueAt(x, y));
                         }
                     }
                 } else {
                     if (other.inBounds(shiftX, shiftY)) {
-                        multiply(x, y, other.get(shiftX, shiftY));
+                        multiply(x, y, other.getValueAt(shiftX, shiftY));
                     }
                 }
             }
@@ -350,9 +366,11 @@ public strictfp class FloatMask extends Mask<Float> {
         if (other.getSize() != getSize()) {
             throw new IllegalArgumentException("Masks not the same size");
         }
-        FloatMask otherFloat = new FloatMask(getSize(), null, symmetrySettings);
-        otherFloat.init(other, 0, value);
-        add(otherFloat);
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                mask[x * size + y] += other.getBit(x, y) ? value : 0f;
+            }
+        }
         VisualDebugger.visualizeMask(this);
         return this;
     }
@@ -383,19 +401,17 @@ public strictfp class FloatMask extends Mask<Float> {
         if (other.getSize() != getSize()) {
             throw new IllegalArgumentException("Masks not the same size");
         }
-        FloatMask otherFloat = new FloatMask(getSize(), null, symmetrySettings);
-        otherFloat.init(other, 0, -value);
-        add(otherFloat);
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                mask[x * size + y] += other.getBit(x, y) ? -value : 0f;
+            }
+        }
         VisualDebugger.visualizeMask(this);
         return this;
     }
 
     public FloatMask sqrt() {
-        for (int y = 0; y < getSize(); y++) {
-            for (int x = 0; x < getSize(); x++) {
-                set(x, y, (float) StrictMath.sqrt(get(x, y)));
-            }
-        }
+        KERNELS.sqrt(mask, 0, mask.length);
         VisualDebugger.visualizeMask(this);
         return this;
     }
@@ -404,33 +420,19 @@ public strictfp class FloatMask extends Mask<Float> {
         if (other.getSize() != getSize()) {
             throw new IllegalArgumentException("Masks not the same size");
         }
-        for (int y = 0; y < getSize(); y++) {
-            for (int x = 0; x < getSize(); x++) {
-                set(x, y, StrictMath.min(get(x, y), other.get(x, y)));
-            }
-        }
+        KERNELS.min(mask, other.mask, 0, mask.length);
         VisualDebugger.visualizeMask(this);
         return this;
     }
 
     public FloatMask clampMin(float val) {
-        for (int y = 0; y < getSize(); y++) {
-            for (int x = 0; x < getSize(); x++) {
-                set(x, y, StrictMath.max(get(x, y), val));
-            }
-        }
+        KERNELS.clampMin(mask, 0, mask.length, val);
         VisualDebugger.visualizeMask(this);
         return this;
     }
 
     public FloatMask threshold(float val) {
-        for (int y = 0; y < getSize(); y++) {
-            for (int x = 0; x < getSize(); x++) {
-                if (get(x, y) < val) {
-                    set(x, y, 0f);
-                }
-            }
-        }
+        KernelExecutor.forEachRow(size, POINTWISE, (start, end) -> KERNELS.threshold(mask, start * size, end * size, val));
         VisualDebugger.visualizeMask(this);
         return this;
     }
@@ -439,21 +441,78 @@ public strictfp class FloatMask extends Mask<Float> {
         if (other.getSize() != getSize()) {
             throw new IllegalArgumentException("Masks not the same size");
         }
-        for (int y = 0; y < getSize(); y++) {
-            for (int x = 0; x < getSize(); x++) {
-                set(x, y, StrictMath.max(get(x, y), other.get(x, y)));
+        KERNELS.max(mask, other.mask, 0, mask.length);
+        VisualDebugger.visualizeMask(this);
+        return this;
+    }
+
+    public PointwiseExpression<FloatMask, FloatMask, BinaryMask> lazy() {
+        return new PointwiseExpression<>(expression -> apply(expression.getSteps(), expression.getOperands()));
+    }
+
+    FloatMask apply(List<PointwiseExpression.Step> steps, List<?> operands) {
+        Object[] resolved = operands.toArray();
+        for (Object operand : resolved) {
+            if (((Mask<?>) operand).getSize() != getSize()) {
+                throw new IllegalArgumentException("Masks not the same size");
             }
         }
+        KernelExecutor.forEachRow(size, POINTWISE, (start, end) -> {
+            for (int chunkStart = start * size; chunkStart < end * size; chunkStart += POINTWISE_CHUNK) {
+                int chunkEnd = StrictMath.min(chunkStart + POINTWISE_CHUNK, end * size);
+                for (PointwiseExpression.Step step : steps) {
+                    applyStep(step, step.operand >= 0 ? resolved[step.operand] : null, chunkStart, chunkEnd);
+                }
+            }
+        });
         VisualDebugger.visualizeMask(this);
         return this;
     }
 
-    public FloatMask clampMax(float val) {
-        for (int y = 0; y < getSize(); y++) {
-            for (int x = 0; x < getSize(); x++) {
-                set(x, y, StrictMath.min(get(x, y), val));
-            }
+    private void applyStep(PointwiseExpression.Step step, Object operand, int start, int end) {
+        float value = step.value;
+        switch (step.op) {
+            case ADD:
+                KERNELS.add(mask, start, end, value);
+                break;
+            case ADD_MASK:
+                KERNELS.add(mask, ((FloatMask) operand).mask, start, end);
+                break;
+            case ADD_BINARY:
+                BinaryMask addBits = (BinaryMask) operand;
+                for (int i = start; i < end; i++) {
+                    mask[i] += addBits.getBit(i) ? value : 0f;
+                }
+                break;
+            case SUBTRACT_MASK:
+                KERNELS.subtract(mask, ((FloatMask) operand).mask, start, end);
+                break;
+            case SUBTRACT_BINARY:
+                BinaryMask subtractBits = (BinaryMask) operand;
+                for (int i = start; i < end; i++) {
+                    mask[i] += subtractBits.getBit(i) ? -value : 0f;
+                }
+                break;
+            case MULTIPLY:
+                KERNELS.multiply(mask, start, end, value);
+                break;
+            case MULTIPLY_MASK:
+                KERNELS.multiply(mask, ((FloatMask) operand).mask, start, end);
+                break;
+            case CLAMP_MIN:
+                KERNELS.clampMin(mask, start, end, value);
+                break;
+            case CLAMP_MAX:
+                KERNELS.clampMax(mask, start, end, value);
+                break;
+            case THRESHOLD:
+                KERNELS.threshold(mask, start, end, value);
+                break;
         }
+    }
+
+    public FloatMask clampMax(float val) {
+        KERNELS.clampMax(mask, 0, mask.length, val);
         VisualDebugger.visualizeMask(this);
         return this;
     }
@@ -470,15 +529,15 @@ public strictfp class FloatMask extends Mask<Float> {
                 int shiftY = y + offsetY - 1;
                 if (getSize() != size) {
                     if (inBounds(shiftX, shiftY)) {
-                        add(shiftX, shiftY, other.get(x, y));
+                        add(shiftX, shiftY, other.getValueAt(x, y));
                         ArrayList<SymmetryPoint> symmetryPoints = getSymmetryPoints(shiftX, shiftY);
                         for (SymmetryPoint symmetryPoint : symmetryPoints) {
-                            add(symmetryPoint.getLocation(), other.get(x, y));
+                            add(symmetryPoint.getLocation(), other.getValueAt(x, y));
                         }
                     }
                 } else {
                     if (other.inBounds(shiftX, shiftY)) {
-                        add(x, y, other.get(shiftX, shiftY));
+                        add(x, y, other.getValueAt(shiftX, shiftY));
                     }
                 }
             }
@@ -488,27 +547,17 @@ public strictfp class FloatMask extends Mask<Float> {
     }
 
     public FloatMask enlarge2(int size) {
-        Float[][] largeMask = getEmptyMask(size);
-        int oldSize = getSize();
-        for (int x = 0; x < size; x++) {
-            for (int y = 0; y < size; y++) {
-                largeMask[x][y] = get(StrictMath.round(x / (size / oldSize)), StrictMath.round(y / (size / oldSize)));
-            }
-        }
-        mask = largeMask;
-        applySymmetry(symmetrySettings.getSpawnSymmetry());
-        VisualDebugger.visualizeMask(this);
-        return this;
+        return resample(size);
     }
 
     public FloatMask removeValuesOutsideOf(BinaryMask other) {
         if (other.getSize() != getSize()) {
             throw new IllegalArgumentException("Masks not the same size");
         }
-        for (int x = 0; x < getSize(); x++) {
-            for (int y = 0; y < getSize(); y++) {
-                if (!other.get(x, y)) {
-                    set(x, y, 0f);
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                if (!other.getBit(x, y)) {
+                    mask[x * size + y] = 0f;
                 }
             }
         }
@@ -520,10 +569,10 @@ public strictfp class FloatMask extends Mask<Float> {
         if (other.getSize() != getSize()) {
             throw new IllegalArgumentException("Masks not the same size");
         }
-        for (int x = 0; x < getSize(); x++) {
-            for (int y = 0; y < getSize(); y++) {
-                if (other.get(x, y)) {
-                    set(x, y, 0f);
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                if (other.getBit(x, y)) {
+                    mask[x * size + y] = 0f;
                 }
             }
         }
@@ -532,11 +581,9 @@ public strictfp class FloatMask extends Mask<Float> {
     }
 
     public FloatMask removeValuesOutsideOfRange(float min, float max) {
-        for (int y = 0; y < getSize(); y++) {
-            for (int x = 0; x < getSize(); x++) {
-                if (this.get(x, y) < min || this.get(x, y) > max) {
-                    set(x, y, 0f);
-                }
+        for (int i = 0; i < mask.length; i++) {
+            if (mask[i] < min || mask[i] > max) {
+                mask[i] = 0f;
             }
         }
         VisualDebugger.visualizeMask(this);
@@ -603,6 +650,47 @@ public strictfp class FloatMask extends Mask<Float> {
         return newMask;
     }
 
+    // same masks as new BinaryMask(this, thresholds[i], seeds[i]) for each i, in one read of the cells
+    public BinaryMask[] band(float[] thresholds, long[] seeds) {
+        if (seeds.length != thresholds.length) {
+            throw new IllegalArgumentException("Thresholds and seeds not the same length");
+        }
+        int[] order = new int[thresholds.length];
+        float[] sortedThresholds = thresholds.clone();
+        Arrays.sort(sortedThresholds);
+        boolean[] placed = new boolean[thresholds.length];
+        for (int k = 0; k < sortedThresholds.length; k++) {
+            for (int i = 0; i < thresholds.length; i++) {
+                if (!placed[i] && Float.compare(thresholds[i], sortedThresholds[k]) == 0) {
+                    order[k] = i;
+                    placed[i] = true;
+                    break;
+                }
+            }
+        }
+        BinaryMask[] bands = new BinaryMask[thresholds.length];
+        for (int i = 0; i < bands.length; i++) {
+            bands[i] = new BinaryMask(size, seeds[i], symmetrySettings);
+        }
+        if (bands.length == 0) {
+            return bands;
+        }
+        KernelExecutor.forEachRow(size, bands[0].getRowAlignment(), POINTWISE, 0, (start, end) -> {
+            for (int x = start; x < end; x++) {
+                for (int y = 0; y < size; y++) {
+                    float value = mask[x * size + y];
+                    for (int k = 0; k < sortedThresholds.length && value >= sortedThresholds[k]; k++) {
+                        bands[order[k]].setBit(x, y, true);
+                    }
+                }
+            }
+        });
+        for (BinaryMask band : bands) {
+            VisualDebugger.visualizeMask(band);
+        }
+        return bands;
+    }
+
     public FloatMask getDistanceFieldForRange(float minValue, float maxValue) {
         convertToBinaryMask(minValue, maxValue).getDistanceField();
         VisualDebugger.visualizeMask(this);
@@ -616,8 +704,23 @@ public strictfp class FloatMask extends Mask<Float> {
         return this;
     }
 
+    // same as subtracting removeAreasOutsideOfSpecifiedIntensityAndSize on a copy
     public FloatMask removeAreasOfSpecifiedIntensityAndSize(int minSize, int maxSize, float minIntensity, float maxIntensity) {
-        subtract(this.copy().removeAreasOutsideOfSpecifiedIntensityAndSize(minSize, maxSize, minIntensity, maxIntensity));
+        BinaryMask keptAreas = new BinaryMask(getSize(), random.nextLong(), symmetrySettings);
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                float value = getValueAt(x, y);
+                if (value < minIntensity || value > maxIntensity) {
+                    value = 0f;
+                }
+                keptAreas.setBit(x, y, value >= minIntensity);
+            }
+        }
+        keptAreas.removeAreasOutsideOfSpecifiedSize(minSize, maxSize);
+        for (int i = 0; i < mask.length; i++) {
+            mask[i] -= StrictMath.max(mask[i] - (keptAreas.getBit(i) ? 0f : 1f), 0f);
+        }
+        keptAreas.release();
         VisualDebugger.visualizeMask(this);
         return this;
     }
@@ -633,45 +736,56 @@ public strictfp class FloatMask extends Mask<Float> {
 
     public BinaryMask getLocalMaximums(float minValue, float maxValue) {
         BinaryMask localMaxima = new BinaryMask(getSize(), random.nextLong(), symmetrySettings);
-        for (int x = 0; x < getSize(); x++) {
-            for (int y = 0; y < getSize(); y++) {
-                float value = get(x, y);
-                if (value > minValue && value < maxValue && isLocalMax(x, y)) {
-                    localMaxima.set(x, y, true);
+        KernelExecutor.forEachRow(size, localMaxima.getRowAlignment(), STENCIL, 1, (start, end) -> {
+            for (int x = start; x < end; x++) {
+                for (int y = 0; y < size; y++) {
+                    float value = getValueAt(x, y);
+                    if (value > minValue && value < maxValue && isLocalMax(x, y)) {
+                        localMaxima.setBit(x, y, true);
+                    }
                 }
             }
-        }
+        });
         return localMaxima;
     }
 
     public FloatMask shrink2(int size) {
-        Float[][] smallMask = getEmptyMask(size);
+        return resample(size);
+    }
+
+    private FloatMask resample(int size) {
+        float[] resampled = Resampling.resample(mask, this.size, size);
+        BufferPool.release(mask);
+        mask = resampled;
+        this.size = size;
+        applySymmetry(symmetrySettings.getSpawnSymmetry());
+        VisualDebugger.visualizeMask(this);
+        return this;
+    }
+
+    // the cells a copy shrunk to size would hold, read straight from this mask so a brush is not copied per stamp
+    FloatMask getPointSampled(int size, Symmetry symmetry) {
         int oldSize = getSize();
-        float sum = 0;
+        FloatMask sampled = new FloatMask(size, null, symmetrySettings);
+        float[] values = sampled.getMask();
         for (int x = 0; x < size; x++) {
+            int largeX = StrictMath.min((x * oldSize) / size + (oldSize / size / 2), oldSize - 1);
             for (int y = 0; y < size; y++) {
-                for (int z = 0; z < (oldSize / size); z++) {
-                    for (int w = 0; w < (oldSize / size); w++) {
-                        sum += get((x * oldSize / size) + z, (y * oldSize / size) + w);
-                    }
-                }
-                smallMask[x][y] = sum / oldSize * size / oldSize * size;
-                sum = 0;
+                int largeY = StrictMath.min((y * oldSize) / size + (oldSize / size / 2), oldSize - 1);
+                values[x * size + y] = mask[largeX * oldSize + largeY];
             }
         }
-        mask = smallMask;
-        applySymmetry(symmetrySettings.getSpawnSymmetry());
-        VisualDebugger.visualizeMask(this);
-        return this;
+        sampled.applySymmetry(symmetry);
+        return sampled;
     }
 
     public BinaryMask getLocal1DMaximums(float minValue, float maxValue) {
         BinaryMask localMaxima = new BinaryMask(getSize(), random.nextLong(), symmetrySettings);
         for (int x = 0; x < getSize(); x++) {
             for (int y = 0; y < getSize(); y++) {
-                float value = get(x, y);
+                float value = getValueAt(x, y);
                 if (value > minValue && value < maxValue && isLocal1DMax(x, y)) {
-                    localMaxima.set(x, y, true);
+                    localMaxima.setBit(x, y, true);
                 }
             }
         }
@@ -689,11 +803,16 @@ public strictfp class FloatMask extends Mask<Float> {
         FloatMask heightMultiplier = otherDistance.copy().clampMax(10f).smooth(2);
         while (coordinates.size() > 0) {
             Vector2f loc = coordinates.removeFirst();
-            FloatMask useBrush = (FloatMask) brush.copy().shrink((int) (otherDistance.get(loc) * 8));
+            FloatMask useBrush = brush.getPointSampled((int) (otherDistance.get(loc) * 8), symmetrySettings.getSpawnSymmetry());
             useBrush.multiply(heightMultiplier, loc, true);
             add(useBrush, loc, true);
+            useBrush.release();
             coordinates.removeIf(cloc -> loc.getDistance(cloc) < otherDistance.get(loc) * 2);
         }
+        brush.release();
+        otherDistance.release();
+        heightMultiplier.release();
+        distanceMaximums.release();
         VisualDebugger.visualizeMask(this);
         return this;
     }
@@ -708,40 +827,20 @@ public strictfp class FloatMask extends Mask<Float> {
         return this;
     }
 
-    public int[][] getInnerCount() {
-        int[][] innerCount = new int[getSize()][getSize()];
-
-        for (int x = 0; x < getSize(); x++) {
-            for (int y = 0; y < getSize(); y++) {
-                int val = StrictMath.round(get(x, y) * 1000);
-                innerCount[x][y] = val;
-                innerCount[x][y] += x > 0 ? innerCount[x - 1][y] : 0;
-                innerCount[x][y] += y > 0 ? innerCount[x][y - 1] : 0;
-                innerCount[x][y] -= x > 0 && y > 0 ? innerCount[x - 1][y - 1] : 0;
-            }
-        }
-        return innerCount;
+    private SymmetryDomain getSymmetryDomain() {
+        return SymmetryDomain.find(this, (index, otherIndex) -> Float.floatToRawIntBits(mask[index]) == Float.floatToRawIntBits(mask[otherIndex]));
     }
 
-    public FloatMask smooth(int radius) {
-        int[][] innerCount = getInnerCount();
+    private int getRowStart(SymmetryDomain domain, int x) {
+        return domain != null ? domain.getRowStart(x) : 0;
+    }
 
-        for (int x = 0; x < getSize(); x++) {
-            for (int y = 0; y < getSize(); y++) {
-                int xLeft = StrictMath.max(0, x - radius);
-                int xRight = StrictMath.min(getSize() - 1, x + radius);
-                int yUp = StrictMath.max(0, y - radius);
-                int yDown = StrictMath.min(getSize() - 1, y + radius);
-                int countA = xLeft > 0 && yUp > 0 ? innerCount[xLeft - 1][yUp - 1] : 0;
-                int countB = yUp > 0 ? innerCount[xRight][yUp - 1] : 0;
-                int countC = xLeft > 0 ? innerCount[xLeft - 1][yDown] : 0;
-                int countD = innerCount[xRight][yDown];
-                float count = (countD + countA - countB - countC) / 1000f;
-                int area = (xRight - xLeft + 1) * (yDown - yUp + 1);
-                set(x, y, count / area);
-            }
-        }
+    private int getRowEnd(SymmetryDomain domain, int x) {
+        return domain != null ? domain.getRowEnd(x) : size;
+    }
 
+    public FloatMask smooth(int radius) {
+        applyBoxFilter(radius, null, getSymmetryDomain(), (count, area) -> count / area);
         VisualDebugger.visualizeMask(this);
         return this;
     }
@@ -750,49 +849,13 @@ public strictfp class FloatMask extends Mask<Float> {
         if (limiter.getSize() != getSize()) {
             throw new IllegalArgumentException("Masks not the same size");
         }
-        int[][] innerCount = getInnerCount();
-
-        for (int x = 0; x < getSize(); x++) {
-            for (int y = 0; y < getSize(); y++) {
-                if (limiter.get(x, y)) {
-                    int xLeft = StrictMath.max(0, x - radius);
-                    int xRight = StrictMath.min(getSize() - 1, x + radius);
-                    int yUp = StrictMath.max(0, y - radius);
-                    int yDown = StrictMath.min(getSize() - 1, y + radius);
-                    int countA = xLeft > 0 && yUp > 0 ? innerCount[xLeft - 1][yUp - 1] : 0;
-                    int countB = yUp > 0 ? innerCount[xRight][yUp - 1] : 0;
-                    int countC = xLeft > 0 ? innerCount[xLeft - 1][yDown] : 0;
-                    int countD = innerCount[xRight][yDown];
-                    float count = (countD + countA - countB - countC) / 1000f;
-                    int area = (xRight - xLeft + 1) * (yDown - yUp + 1);
-                    set(x, y, count / area);
-                }
-            }
-        }
-
+        applyBoxFilter(radius, limiter, null, (count, area) -> count / area);
         VisualDebugger.visualizeMask(this);
         return this;
     }
 
     public FloatMask spike(int radius) {
-        int[][] innerCount = getInnerCount();
-
-        for (int x = 0; x < getSize(); x++) {
-            for (int y = 0; y < getSize(); y++) {
-                int xLeft = StrictMath.max(0, x - radius);
-                int xRight = StrictMath.min(getSize() - 1, x + radius);
-                int yUp = StrictMath.max(0, y - radius);
-                int yDown = StrictMath.min(getSize() - 1, y + radius);
-                int countA = xLeft > 0 && yUp > 0 ? innerCount[xLeft - 1][yUp - 1] : 0;
-                int countB = yUp > 0 ? innerCount[xRight][yUp - 1] : 0;
-                int countC = xLeft > 0 ? innerCount[xLeft - 1][yDown] : 0;
-                int countD = innerCount[xRight][yDown];
-                float count = (countD + countA - countB - countC) / 1000f;
-                int area = (xRight - xLeft + 1) * (yDown - yUp + 1);
-                set(x, y, count / area * count / area);
-            }
-        }
-
+        applyBoxFilter(radius, null, getSymmetryDomain(), (count, area) -> count / area * count / area);
         VisualDebugger.visualizeMask(this);
         return this;
     }
@@ -801,28 +864,44 @@ public strictfp class FloatMask extends Mask<Float> {
         if (limiter.getSize() != getSize()) {
             throw new IllegalArgumentException("Masks not the same size");
         }
-        int[][] innerCount = getInnerCount();
+        applyBoxFilter(radius, limiter, null, (count, area) -> count / area * count / area);
+        VisualDebugger.visualizeMask(this);
+        return this;
+    }
 
-        for (int x = 0; x < getSize(); x++) {
-            for (int y = 0; y < getSize(); y++) {
-                if (limiter.get(x, y)) {
-                    int xLeft = StrictMath.max(0, x - radius);
-                    int xRight = StrictMath.min(getSize() - 1, x + radius);
-                    int yUp = StrictMath.max(0, y - radius);
-                    int yDown = StrictMath.min(getSize() - 1, y + radius);
-                    int countA = xLeft > 0 && yUp > 0 ? innerCount[xLeft - 1][yUp - 1] : 0;
-                    int countB = yUp > 0 ? innerCount[xRight][yUp - 1] : 0;
-                    int countC = xLeft > 0 ? innerCount[xLeft - 1][yDown] : 0;
-                    int countD = innerCount[xRight][yDown];
-                    float count = (countD + countA - countB - countC) / 1000f;
-                    int area = (xRight - xLeft + 1) * (yDown - yUp + 1);
-                    set(x, y, count / area * count / area);
+    // values are summed in thousandths so both box filter paths give the same sums
+    private void applyBoxFilter(int radius, BinaryMask limiter, SymmetryDomain domain, BoxValue boxValue) {
+        BoxFilter.CellSource source = index -> StrictMath.round(mask[index] * 1000);
+        if (limiter == null && BoxFilter.isSeparableCheaper(size, radius)) {
+            long[] rowSums = BoxFilter.getRowWindowSums(size, radius, source);
+            BoxFilter.forEachWindowRow(size, radius, rowSums, 1, (x, windowSums) -> {
+                for (int y = getRowStart(domain, x); y < getRowEnd(domain, x); y++) {
+                    mask[x * size + y] = boxValue.get(windowSums[y] / 1000f, BoxFilter.getArea(size, radius, x, y));
                 }
-            }
+            });
+            BufferPool.release(rowSums);
+        } else {
+            long[] table = BoxFilter.getSummedAreaTable(size, source);
+            KernelExecutor.forEachRow(size, STENCIL, radius, (start, end) -> {
+                for (int x = start; x < end; x++) {
+                    for (int y = getRowStart(domain, x); y < getRowEnd(domain, x); y++) {
+                        if (limiter == null || limiter.getBit(x, y)) {
+                            float count = BoxFilter.getWindowSum(table, size, radius, x, y) / 1000f;
+                            mask[x * size + y] = boxValue.get(count, BoxFilter.getArea(size, radius, x, y));
+                        }
+                    }
+                }
+            });
+            BufferPool.release(table);
         }
+        if (domain != null) {
+            copyCells(domain.getSources(), domain.getDestinations());
+        }
+    }
 
-        VisualDebugger.visualizeMask(this);
-        return this;
+    @FunctionalInterface
+    private interface BoxValue {
+        float get(float count, int area);
     }
 
     public FloatMask maskToMountains(BinaryMask other) {
@@ -837,45 +916,61 @@ public strictfp class FloatMask extends Mask<Float> {
         FloatMask heightMultiplier = otherDistance.copy().clampMax(16f).smooth(2);
         while (coordinates.size() > 0) {
             Vector2f loc = coordinates.removeFirst();
-            FloatMask useBrush = (FloatMask) brush.copy().shrink((int) (otherDistance.get(loc) * 8), Symmetry.NONE);
+            FloatMask useBrush = brush.getPointSampled((int) (otherDistance.get(loc) * 8), Symmetry.NONE);
             useBrush.multiply(heightMultiplier, loc, true);
             add(useBrush, loc, true);
+            useBrush.release();
             coordinates.removeIf(cloc -> loc.getDistance(cloc) < otherDistance.get(loc) * 2);
         }
+        brush.release();
+        otherDistance.release();
+        heightMultiplier.release();
+        distanceMaximums.release();
         VisualDebugger.visualizeMask(this);
         return this;
     }
 
     public FloatMask gradient() {
-        Float[][] maskCopy = getEmptyMask(getSize());
-        for (int x = 0; x < getSize(); x++) {
-            for (int y = 0; y < getSize(); y++) {
-                int xNeg = StrictMath.max(0, x - 1);
-                int xPos = StrictMath.min(getSize() - 1, x + 1);
-                int yNeg = StrictMath.max(0, y - 1);
-                int yPos = StrictMath.min(getSize() - 1, y + 1);
-                float xSlope = get(xPos, y) - get(xNeg, y);
-                float ySlope = get(x, yPos) - get(x, yNeg);
-                maskCopy[x][y] = (float) StrictMath.sqrt(xSlope * xSlope + ySlope * ySlope);
+        float[] maskCopy = BufferPool.borrowFloats(size * size);
+        SymmetryDomain domain = getSymmetryDomain();
+        KernelExecutor.forEachRow(size, STENCIL, 1, (start, end) -> {
+            for (int x = start; x < end; x++) {
+                for (int y = getRowStart(domain, x); y < getRowEnd(domain, x); y++) {
+                    int xNeg = StrictMath.max(0, x - 1);
+                    int xPos = StrictMath.min(size - 1, x + 1);
+                    int yNeg = StrictMath.max(0, y - 1);
+                    int yPos = StrictMath.min(size - 1, y + 1);
+                    float xSlope = getValueAt(xPos, y) - getValueAt(xNeg, y);
+                    float ySlope = getValueAt(x, yPos) - getValueAt(x, yNeg);
+                    maskCopy[x * size + y] = (float) StrictMath.sqrt(xSlope * xSlope + ySlope * ySlope);
+                }
             }
+        });
+        if (domain != null) {
+            copyCells(maskCopy, domain.getSources(), domain.getDestinations());
         }
+        BufferPool.release(mask);
         mask = maskCopy;
         VisualDebugger.visualizeMask(this);
         return this;
     }
 
     public FloatMask supcomGradient() {
-        Float[][] maskCopy = getEmptyMask(getSize());
-        for (int x = 0; x < getSize(); x++) {
-            for (int y = 0; y < getSize(); y++) {
-                int xPos = StrictMath.min(getSize() - 1, x + 1);
-                int yPos = StrictMath.min(getSize() - 1, y + 1);
-                float xSlope = StrictMath.abs(get(x, y) - get(xPos, y));
-                float ySlope = StrictMath.abs(get(x, y) - get(x, yPos));
-                float diagSlope = StrictMath.abs(get(x, y) - get(xPos, yPos));
-                maskCopy[x][y] = Collections.max(Arrays.asList(xSlope, ySlope, diagSlope));
+        float[] maskCopy = BufferPool.borrowFloats(size * size);
+        KernelExecutor.forEachRow(size, STENCIL, 1, (start, end) -> {
+            for (int x = start; x < end; x++) {
+                for (int y = 0; y < size; y++) {
+                    int xPos = StrictMath.min(size - 1, x + 1);
+                    int yPos = StrictMath.min(size - 1, y + 1);
+                    float value = getValueAt(x, y);
+                    float xSlope = StrictMath.abs(value - getValueAt(xPos, y));
+                    float ySlope = StrictMath.abs(value - getValueAt(x, yPos));
+                    float diagSlope = StrictMath.abs(value - getValueAt(xPos, yPos));
+                    maskCopy[x * size + y] = StrictMath.max(StrictMath.max(xSlope, ySlope), diagSlope);
+                }
             }
-        }
+        });
+        BufferPool.release(mask);
         mask = maskCopy;
         VisualDebugger.visualizeMask(this);
         return this;
@@ -892,26 +987,15 @@ public strictfp class FloatMask extends Mask<Float> {
 
         for (int x = 0; x < getSize(); x++) {
             for (int y = 0; y < getSize(); y++) {
-                out.writeFloat(get(x, y));
+                out.writeFloat(getValueAt(x, y));
             }
         }
 
         out.close();
     }
 
-    public String toHash() throws NoSuchAlgorithmException {
-        ByteBuffer bytes = ByteBuffer.allocate(getSize() * getSize() * 4);
-        for (int x = getMinXBound(symmetrySettings.getSpawnSymmetry()); x < getMaxXBound(symmetrySettings.getSpawnSymmetry()); x++) {
-            for (int y = getMinYBound(x, symmetrySettings.getSpawnSymmetry()); y < getMaxYBound(x, symmetrySettings.getSpawnSymmetry()); y++) {
-                bytes.putFloat(get(x, y));
-            }
-        }
-        byte[] data = MessageDigest.getInstance("MD5").digest(bytes.array());
-        StringBuilder stringBuilder = new StringBuilder();
-        for (byte datum : data) {
-            stringBuilder.append(String.format("%02x", datum));
-        }
-        return stringBuilder.toString();
+    public String toHash() {
+        return ContentHash.toHex(ContentHash.hash(mask, size * size) * 31 + size);
     }
 
 
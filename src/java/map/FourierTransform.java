@@ -0,0 +1,125 @@
+package map;
+
+import util.BufferPool;
+import util.KernelExecutor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static util.KernelExecutor.Access.POINTWISE;
+
+/**
+ * Iterative radix 2 complex FFT over square grids of doubles with a power of two side. The bit reversal order and
+ * twiddle factors of a length are computed once and kept as its plan. Grids transform their rows and then their
+ * columns, each band of lines working in its own borrowed scratch arrays.
+ */
+strictfp class FourierTransform {
+
+    private static final Map<Integer, FourierTransform> plans = new ConcurrentHashMap<>();
+
+    private final int length;
+    private final int[] reversed;
+    private final double[] cos;
+    private final double[] sin;
+
+    private FourierTransform(int length) {
+        this.length = length;
+        reversed = new int[length];
+        int bits = Integer.numberOfTrailingZeros(length);
+        for (int i = 0; i < length; i++) {
+            reversed[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+        }
+        cos = new double[length / 2];
+        sin = new double[length / 2];
+        for (int i = 0; i < length / 2; i++) {
+            double angle = -2 * StrictMath.PI * i / length;
+            cos[i] = StrictMath.cos(angle);
+            sin[i] = StrictMath.sin(angle);
+        }
+    }
+
+    static FourierTransform get(int length) {
+        if (length <= 0 || Integer.bitCount(length) != 1) {
+            throw new IllegalArgumentException("Length is not a power of two");
+        }
+        return plans.computeIfAbsent(length, FourierTransform::new);
+    }
+
+    /**
+     * Returns the smallest power of two at least length
+     */
+    static int getPaddedLength(int length) {
+        return length <= 1 ? 1 : Integer.highestOneBit(length - 1) << 1;
+    }
+
+    int getLength() {
+        return length;
+    }
+
+    /**
+     * Transforms the length by length grid in place, the inverse includes the division by the cell count
+     */
+    void transform(double[] real, double[] imaginary, boolean inverse) {
+        KernelExecutor.forEachRow(length, POINTWISE, (start, end) -> {
+            for (int x = start; x < end; x++) {
+                transformLine(real, imaginary, x * length, inverse);
+            }
+        });
+        KernelExecutor.forEachRow(length, POINTWISE, (start, end) -> {
+            double[] lineReal = BufferPool.borrowDoubles(length);
+            double[] lineImaginary = BufferPool.borrowDoubles(length);
+            for (int y = start; y < end; y++) {
+                for (int x = 0; x < length; x++) {
+                    lineReal[x] = real[x * length + y];
+                    lineImaginary[x] = imaginary[x * length + y];
+                }
+                transformLine(lineReal, lineImaginary, 0, inverse);
+                for (int x = 0; x < length; x++) {
+                    real[x * length + y] = lineReal[x];
+                    imaginary[x * length + y] = lineImaginary[x];
+                }
+            }
+            BufferPool.release(lineReal);
+            BufferPool.release(lineImaginary);
+        });
+        if (inverse) {
+            double scale = 1d / ((double) length * length);
+            for (int i = 0; i < real.length; i++) {
+                real[i] *= scale;
+                imaginary[i] *= scale;
+            }
+        }
+    }
+
+    private void transformLine(double[] real, double[] imaginary, int offset, boolean inverse) {
+        for (int i = 0; i < length; i++) {
+            int j = reversed[i];
+            if (j > i) {
+                double swap = real[offset + i];
+                real[offset + i] = real[offset + j];
+                real[offset + j] = swap;
+                swap = imaginary[offset + i];
+                imaginary[offset + i] = imaginary[offset + j];
+                imaginary[offset + j] = swap;
+            }
+        }
+        double direction = inverse ? -1 : 1;
+        for (int half = 1; half < length; half <<= 1) {
+            int step = length / (half << 1);
+            for (int start = 0; start < length; start += half << 1) {
+                for (int k = 0; k < half; k++) {
+                    double twiddleReal = cos[k * step];
+                    double twiddleImaginary = direction * sin[k * step];
+                    int even = offset + start + k;
+                    int odd = even + half;
+                    double oddReal = real[odd] * twiddleReal - imaginary[odd] * twiddleImaginary;
+                    double oddImaginary = real[odd] * twiddleImaginary + imaginary[odd] * twiddleReal;
+                    real[odd] = real[even] - oddReal;
+                    imaginary[odd] = imaginary[even] - oddImaginary;
+                    real[even] += oddReal;
+                    imaginary[even] += oddImaginary;
+                }
+            }
+        }
+    }
+}
@@ -12,7 +12,6 @@ import java.util.Random;
 @Getter
 public strictfp abstract class Mask<T> {
     protected final Random random;
-    protected T[][] mask;
     protected SymmetrySettings symmetrySettings;
 
     protected Mask(Long seed) {
@@ -23,7 +22,21 @@ public strictfp abstract class Mask<T> {
         }
     }
 
-    protected abstract T[][] getEmptyMask(int size);
+    /**
+     * Replaces the backing storage with a grid of the given size where the cell at flat index {@code x * size + y}
+     * takes the value the current grid holds at flat index {@code sourceIndices[x * size + y]}
+     */
+    protected abstract void remap(int size, int[] sourceIndices);
+
+    /**
+     * Returns the backing storage to the {@link util.BufferPool}, only for temporaries that are not used afterwards
+     */
+    abstract void release();
+
+    /**
+     * Copies the value of every cell {@code sources[i]} to the cell {@code destinations[i]} in order
+     */
+    protected abstract void copyCells(int[] sources, int[] destinations);
 
     abstract T get(Vector2f location);
 
@@ -243,19 +256,11 @@ public strictfp abstract class Mask<T> {
     }
 
     public void applySymmetry(Symmetry symmetry, boolean reverse) {
-        for (int x = getMinXBound(symmetry); x < getMaxXBound(symmetry); x++) {
-            for (int y = getMinYBound(x, symmetry); y < getMaxYBound(x, symmetry); y++) {
-                ArrayList<SymmetryPoint> symPoints = getSymmetryPoints(x, y, symmetry);
-                int finalX = x;
-                int finalY = y;
-                symPoints.forEach(symmetryPoint -> {
-                    if (reverse) {
-                        set(finalX, finalY, get(symmetryPoint.getLocation()));
-                    } else {
-                        set(symmetryPoint.getLocation(), get(finalX, finalY));
-                    }
-                });
-            }
+        SymmetryDomain domain = SymmetryDomain.get(this, symmetry);
+        if (reverse) {
+            copyCells(domain.getDestinations(), domain.getSources());
+        } else {
+            copyCells(domain.getSources(), domain.getDestinations());
         }
     }
 
@@ -277,17 +282,18 @@ public strictfp abstract class Mask<T> {
     }
 
     public Mask<T> enlarge(int size, Symmetry symmetry) {
-        T[][] largeMask = getEmptyMask(size);
+        int oldSize = getSize();
+        int[] sourceIndices = new int[size * size];
         int smallX;
         int smallY;
         for (int x = 0; x < size; x++) {
-            smallX = StrictMath.min(x / (size / getSize()), getSize() - 1);
+            smallX = StrictMath.min(x / (size / oldSize), oldSize - 1);
             for (int y = 0; y < size; y++) {
-                smallY = StrictMath.min(y / (size / getSize()), getSize() - 1);
-                largeMask[x][y] = get(smallX, smallY);
+                smallY = StrictMath.min(y / (size / oldSize), oldSize - 1);
+                sourceIndices[x * size + y] = smallX * oldSize + smallY;
             }
         }
-        mask = largeMask;
+        remap(size, sourceIndices);
         applySymmetry(symmetry);
         VisualDebugger.visualizeMask(this);
         return this;
@@ -298,21 +304,22 @@ public strictfp abstract class Mask<T> {
     }
 
     public Mask<T> shrink(int size, Symmetry symmetry) {
-        T[][] smallMask = getEmptyMask(size);
+        int oldSize = getSize();
+        int[] sourceIndices = new int[size * size];
         int largeX;
         int largeY;
         for (int x = 0; x < size; x++) {
-            largeX = (x * getSize()) / size + (getSize() / size / 2);
-            if (largeX >= getSize())
-                largeX = getSize() - 1;
+            largeX = (x * oldSize) / size + (oldSize / size / 2);
+            if (largeX >= oldSize)
+                largeX = oldSize - 1;
             for (int y = 0; y < size; y++) {
-                largeY = (y * getSize()) / size + (getSize() / size / 2);
-                if (largeY >= getSize())
-                    largeY = getSize() - 1;
-                smallMask[x][y] = get(largeX, largeY);
+                largeY = (y * oldSize) / size + (oldSize / size / 2);
+                if (largeY >= oldSize)
+                    largeY = oldSize - 1;
+                sourceIndices[x * size + y] = largeX * oldSize + largeY;
             }
         }
-        mask = smallMask;
+        remap(size, sourceIndices);
         applySymmetry(symmetry);
         VisualDebugger.visualizeMask(this);
         return this;
@@ -322,14 +329,7 @@ public strictfp abstract class Mask<T> {
         if (symmetry.getNumSymPoints() != 2) {
             throw new IllegalArgumentException("Cannot flip non single axis symmetry");
         }
-        T[][] newMask = getEmptyMask(getSize());
-        for (int x = 0; x < getSize(); x++) {
-            for (int y = 0; y < getSize(); y++) {
-                ArrayList<SymmetryPoint> symmetryPoints = getSymmetryPoints(x, y, symmetry);
-                newMask[x][y] = get(symmetryPoints.get(0).getLocation());
-            }
-        }
-        this.mask = newMask;
+        remap(getSize(), SymmetryDomain.get(this, symmetry).getFlipSources());
         VisualDebugger.visualizeMask(this);
         return this;
     }
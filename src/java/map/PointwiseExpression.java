@@ -0,0 +1,117 @@
+package map;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Records a run of pointwise float mask ops so they can be applied in a single pass over the mask.
+ * Every step only reads the same cell of the mask and its operands, so applying all steps to one cell
+ * before moving on gives the same floats as running the ops one after another.
+ *
+ * @param <M> the mask type evaluate returns
+ * @param <F> the float mask operand type
+ * @param <B> the binary mask operand type
+ */
+public strictfp class PointwiseExpression<M, F, B> {
+
+    enum Op {
+        ADD, ADD_MASK, ADD_BINARY, SUBTRACT_MASK, SUBTRACT_BINARY, MULTIPLY, MULTIPLY_MASK, CLAMP_MIN, CLAMP_MAX, THRESHOLD
+    }
+
+    static strictfp class Step {
+        final Op op;
+        final float value;
+        final int operand;
+
+        Step(Op op, float value, int operand) {
+            this.op = op;
+            this.value = value;
+            this.operand = operand;
+        }
+    }
+
+    private final List<Step> steps = new ArrayList<>();
+    private final List<Object> operands = new ArrayList<>();
+    private final Function<PointwiseExpression<M, F, B>, M> evaluator;
+
+    PointwiseExpression(Function<PointwiseExpression<M, F, B>, M> evaluator) {
+        this.evaluator = evaluator;
+    }
+
+    public PointwiseExpression<M, F, B> add(float value) {
+        return addStep(Op.ADD, value, null);
+    }
+
+    public PointwiseExpression<M, F, B> add(F other) {
+        return addStep(Op.ADD_MASK, 0f, other);
+    }
+
+    public PointwiseExpression<M, F, B> add(B other, float value) {
+        return addStep(Op.ADD_BINARY, value, other);
+    }
+
+    public PointwiseExpression<M, F, B> subtract(F other) {
+        return addStep(Op.SUBTRACT_MASK, 0f, other);
+    }
+
+    public PointwiseExpression<M, F, B> subtract(B other, float value) {
+        return addStep(Op.SUBTRACT_BINARY, value, other);
+    }
+
+    public PointwiseExpression<M, F, B> multiply(float value) {
+        return addStep(Op.MULTIPLY, value, null);
+    }
+
+    public PointwiseExpression<M, F, B> multiply(F other) {
+        return addStep(Op.MULTIPLY_MASK, 0f, other);
+    }
+
+    public PointwiseExpression<M, F, B> clampMin(float value) {
+        return addStep(Op.CLAMP_MIN, value, null);
+    }
+
+    public PointwiseExpression<M, F, B> clampMax(float value) {
+        return addStep(Op.CLAMP_MAX, value, null);
+    }
+
+    public PointwiseExpression<M, F, B> threshold(float value) {
+        return addStep(Op.THRESHOLD, value, null);
+    }
+
+    /**
+     * Applies the recorded steps to the mask the expression was started from and returns that mask
+     */
+    public M evaluate() {
+        return evaluator.apply(this);
+    }
+
+    List<Step> getSteps() {
+        return Collections.unmodifiableList(steps);
+    }
+
+    /**
+     * Returns the distinct operand masks in the order the steps first used them
+     */
+    List<Object> getOperands() {
+        return Collections.unmodifiableList(operands);
+    }
+
+    private PointwiseExpression<M, F, B> addStep(Op op, float value, Object operand) {
+        int operandIndex = -1;
+        if (operand != null) {
+            for (int i = 0; i < operands.size() && operandIndex < 0; i++) {
+                if (operands.get(i) == operand) {
+                    operandIndex = i;
+                }
+            }
+            if (operandIndex < 0) {
+                operandIndex = operands.size();
+                operands.add(operand);
+            }
+        }
+        steps.add(new Step(op, value, operandIndex));
+        return this;
+    }
+}
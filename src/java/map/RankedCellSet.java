@@ -0,0 +1,80 @@
+package map;
+
+import util.BufferPool;
+
+/**
+ * A set of cell indices kept in index order that finds the cell of a given rank and removes cells in logarithmic
+ * time, backed by a bitset for membership and a Fenwick tree of counts. Drawing a rank uniformly picks the same
+ * cell as indexing a list of the remaining cells in index order, without rebuilding that list after every removal.
+ */
+strictfp class RankedCellSet {
+
+    private final int capacity;
+    private final long[] members;
+    private final int[] counts;
+    private final int highestStep;
+    private int size;
+
+    /**
+     * Creates the set of the cells set in words, packed the way BinaryMask packs its cells
+     */
+    RankedCellSet(long[] words, int capacity) {
+        this.capacity = capacity;
+        members = BufferPool.borrowLongs((capacity + 63) >>> 6);
+        counts = BufferPool.borrowInts(capacity + 1);
+        System.arraycopy(words, 0, members, 0, members.length);
+        for (int i = 0; i < capacity; i++) {
+            if (contains(i)) {
+                counts[i + 1]++;
+                size++;
+            }
+        }
+        for (int i = 1; i <= capacity; i++) {
+            int parent = i + (i & -i);
+            if (parent <= capacity) {
+                counts[parent] += counts[i];
+            }
+        }
+        highestStep = capacity > 0 ? Integer.highestOneBit(capacity) : 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(int index) {
+        return (members[index >>> 6] & (1L << index)) != 0;
+    }
+
+    void remove(int index) {
+        if (!contains(index)) {
+            return;
+        }
+        members[index >>> 6] &= ~(1L << index);
+        size--;
+        for (int i = index + 1; i <= capacity; i += i & -i) {
+            counts[i]--;
+        }
+    }
+
+    /**
+     * Returns the cell with rank cells before it, counting from zero in index order
+     */
+    int get(int rank) {
+        int position = 0;
+        int remaining = rank;
+        for (int step = highestStep; step > 0; step >>= 1) {
+            int next = position + step;
+            if (next <= capacity && counts[next] <= remaining) {
+                position = next;
+                remaining -= counts[next];
+            }
+        }
+        return position;
+    }
+
+    void release() {
+        BufferPool.release(members);
+        BufferPool.release(counts);
+    }
+}
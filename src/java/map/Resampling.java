@@ -0,0 +1,102 @@
+package map;
+
+import util.BufferPool;
+import util.KernelExecutor;
+
+import static util.KernelExecutor.Access.POINTWISE;
+
+/**
+ * Resampling of a mask's flat cells to another size. Shrinking averages the footprint of every target cell, so odd
+ * sizes alias no more than sizes that divide, and enlarging interpolates bilinearly
+ */
+strictfp class Resampling {
+
+    private Resampling() {
+    }
+
+    /**
+     * Returns a borrowed grid of size by size cells, the caller releases it to the buffer pool
+     */
+    static float[] resample(float[] source, int sourceSize, int size) {
+        float[] resampled = BufferPool.borrowFloats(size * size);
+        if (sourceSize == size) {
+            System.arraycopy(source, 0, resampled, 0, size * size);
+        } else if (sourceSize > size) {
+            boxAverage(source, sourceSize, resampled, size);
+        } else {
+            interpolate(source, sourceSize, resampled, size);
+        }
+        return resampled;
+    }
+
+    /**
+     * Averages the source over the footprint of every target cell, the source rows and columns a footprint covers only
+     * in part count by the part covered. One pass along y into a source rows by size grid, one along x
+     */
+    private static void boxAverage(float[] source, int sourceSize, float[] target, int size) {
+        float scale = (float) sourceSize / size;
+        int span = (int) StrictMath.ceil(scale) + 1;
+        int[] starts = new int[size];
+        float[] weights = new float[size * span];
+        for (int i = 0; i < size; i++) {
+            float low = i * scale;
+            float high = i == size - 1 ? sourceSize : StrictMath.min((i + 1) * scale, sourceSize);
+            starts[i] = StrictMath.min((int) low, sourceSize - 1);
+            float total = 0;
+            for (int k = 0; k < span && starts[i] + k < sourceSize; k++) {
+                int j = starts[i] + k;
+                float weight = StrictMath.max(0f, StrictMath.min(high, j + 1) - StrictMath.max(low, j));
+                weights[i * span + k] = weight;
+                total += weight;
+            }
+            for (int k = 0; k < span; k++) {
+                weights[i * span + k] /= total;
+            }
+        }
+        float[] rows = BufferPool.borrowFloats(sourceSize * size);
+        KernelExecutor.forEachRow(sourceSize, POINTWISE, (start, end) -> {
+            for (int x = start; x < end; x++) {
+                for (int y = 0; y < size; y++) {
+                    float sum = 0;
+                    for (int k = 0; k < span && starts[y] + k < sourceSize; k++) {
+                        sum += source[x * sourceSize + starts[y] + k] * weights[y * span + k];
+                    }
+                    rows[x * size + y] = sum;
+                }
+            }
+        });
+        KernelExecutor.forEachRow(size, POINTWISE, (start, end) -> {
+            for (int x = start; x < end; x++) {
+                for (int y = 0; y < size; y++) {
+                    float sum = 0;
+                    for (int k = 0; k < span && starts[x] + k < sourceSize; k++) {
+                        sum += rows[(starts[x] + k) * size + y] * weights[x * span + k];
+                    }
+                    target[x * size + y] = sum;
+                }
+            }
+        });
+        BufferPool.release(rows);
+    }
+
+    private static void interpolate(float[] source, int sourceSize, float[] resampled, int size) {
+        float scale = (float) sourceSize / size;
+        KernelExecutor.forEachRow(size, POINTWISE, (start, end) -> {
+            for (int x = start; x < end; x++) {
+                float sourceX = StrictMath.min(StrictMath.max((x + .5f) * scale - .5f, 0f), sourceSize - 1);
+                int lowX = (int) sourceX;
+                int highX = StrictMath.min(lowX + 1, sourceSize - 1);
+                float weightX = sourceX - lowX;
+                for (int y = 0; y < size; y++) {
+                    float sourceY = StrictMath.min(StrictMath.max((y + .5f) * scale - .5f, 0f), sourceSize - 1);
+                    int lowY = (int) sourceY;
+                    int highY = StrictMath.min(lowY + 1, sourceSize - 1);
+                    float weightY = sourceY - lowY;
+                    float low = source[lowX * sourceSize + lowY] * (1 - weightY) + source[lowX * sourceSize + highY] * weightY;
+                    float high = source[highX * sourceSize + lowY] * (1 - weightY) + source[highX * sourceSize + highY] * weightY;
+                    resampled[x * size + y] = low * (1 - weightX) + high * weightX;
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,111 @@
+package map;
+
+/**
+ * The reference loops, the arithmetic here defines the results every other backend has to match
+ */
+public strictfp class ScalarFloatKernels implements FloatKernels {
+
+    static final ScalarFloatKernels INSTANCE = new ScalarFloatKernels();
+
+    @Override
+    public void add(float[] values, int start, int end, float value) {
+        for (int i = start; i < end; i++) {
+            values[i] += value;
+        }
+    }
+
+    @Override
+    public void add(float[] values, float[] other, int start, int end) {
+        for (int i = start; i < end; i++) {
+            values[i] += other[i];
+        }
+    }
+
+    @Override
+    public void subtract(float[] values, float[] other, int start, int end) {
+        for (int i = start; i < end; i++) {
+            values[i] -= other[i];
+        }
+    }
+
+    @Override
+    public void multiply(float[] values, int start, int end, float value) {
+        for (int i = start; i < end; i++) {
+            values[i] *= value;
+        }
+    }
+
+    @Override
+    public void multiply(float[] values, float[] other, int start, int end) {
+        for (int i = start; i < end; i++) {
+            values[i] *= other[i];
+        }
+    }
+
+    @Override
+    public void min(float[] values, float[] other, int start, int end) {
+        for (int i = start; i < end; i++) {
+            values[i] = StrictMath.min(values[i], other[i]);
+        }
+    }
+
+    @Override
+    public void max(float[] values, float[] other, int start, int end) {
+        for (int i = start; i < end; i++) {
+            values[i] = StrictMath.max(values[i], other[i]);
+        }
+    }
+
+    @Override
+    public void clampMin(float[] values, int start, int end, float value) {
+        for (int i = start; i < end; i++) {
+            values[i] = StrictMath.max(values[i], value);
+        }
+    }
+
+    @Override
+    public void clampMax(float[] values, int start, int end, float value) {
+        for (int i = start; i < end; i++) {
+            values[i] = StrictMath.min(values[i], value);
+        }
+    }
+
+    @Override
+    public void threshold(float[] values, int start, int end, float threshold) {
+        for (int i = start; i < end; i++) {
+            if (values[i] < threshold) {
+                values[i] = 0f;
+            }
+        }
+    }
+
+    @Override
+    public void sqrt(float[] values, int start, int end) {
+        for (int i = start; i < end; i++) {
+            values[i] = (float) StrictMath.sqrt(values[i]);
+        }
+    }
+
+    @Override
+    public float min(float[] values, int start, int end, float initial) {
+        float min = initial;
+        for (int i = start; i < end; i++) {
+            min = StrictMath.min(min, values[i]);
+        }
+        return min;
+    }
+
+    @Override
+    public float max(float[] values, int start, int end, float initial) {
+        float max = initial;
+        for (int i = start; i < end; i++) {
+            max = StrictMath.max(max, values[i]);
+        }
+        return max;
+    }
+
+    @Override
+    public String getName() {
+        return "scalar";
+    }
+}
@@ -0,0 +1,290 @@
+package map;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Flat index tables for one symmetry on one grid size. The sources and destinations hold the copies applySymmetry
+ * makes, in the order it makes them, so symmetry is applied with primitive copies instead of per-cell SymmetryPoint lists.
+ * The table also knows which cells an op has to compute when its input is already symmetric: an op that commutes
+ * with the symmetry (a centred stencil such as smooth or gradient) gives the same result on every symmetric image
+ * of a cell, so computing the domain rows and mirroring them reproduces the full grid exactly.
+ * Tables are cached per size, symmetry and team symmetry since the bounds depend on all three.
+ */
+strictfp class SymmetryDomain {
+
+    private static final Map<String, SymmetryDomain> domains = new ConcurrentHashMap<>();
+    private static volatile boolean enabled = true;
+
+    private final Mask<?> prototype;
+    private final Symmetry symmetry;
+    private final int size;
+    private final int[] sources;
+    private final int[] destinations;
+    private int[] rowStarts;
+    private int[] rowEnds;
+    private int[] checkedCells;
+    private int[] checkedImages;
+    private int[] flipSources;
+    private long[] regionWords;
+    private int[] imageStarts;
+    private int[] images;
+    private boolean stable;
+
+    private SymmetryDomain(Mask<?> mask, Symmetry symmetry) {
+        // the lazily built tables only need the geometry, so keep an empty stand-in rather than a live mask that may be resized
+        BinaryMask geometry = new BinaryMask(mask.getSize(), null, mask.getSymmetrySettings());
+        geometry.release();
+        this.prototype = geometry;
+        this.symmetry = symmetry;
+        this.size = mask.getSize();
+        ArrayList<Integer> sourceList = new ArrayList<>();
+        ArrayList<Integer> destinationList = new ArrayList<>();
+        for (int x = mask.getMinXBound(symmetry); x < mask.getMaxXBound(symmetry); x++) {
+            for (int y = mask.getMinYBound(x, symmetry); y < mask.getMaxYBound(x, symmetry); y++) {
+                int source = x * size + y;
+                for (SymmetryPoint symmetryPoint : mask.getSymmetryPoints(x, y, symmetry)) {
+                    int destination = getIndex(symmetryPoint);
+                    if (destination != source) {
+                        sourceList.add(source);
+                        destinationList.add(destination);
+                    }
+                }
+            }
+        }
+        sources = sourceList.stream().mapToInt(Integer::intValue).toArray();
+        destinations = destinationList.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Returns the domain of the first of the mask's terrain and spawn symmetry it satisfies, or null when
+     * it satisfies neither or the mode is switched off
+     */
+    static SymmetryDomain find(Mask<?> mask, CellComparator comparator) {
+        if (!enabled) {
+            return null;
+        }
+        SymmetrySettings symmetrySettings = mask.getSymmetrySettings();
+        Symmetry[] candidates = {symmetrySettings.getTerrainSymmetry(), symmetrySettings.getSpawnSymmetry()};
+        for (int i = 0; i < candidates.length; i++) {
+            Symmetry symmetry = candidates[i];
+            if (symmetry.getNumSymPoints() < 2 || (i > 0 && symmetry == candidates[0])) {
+                continue;
+            }
+            SymmetryDomain domain = get(mask, symmetry);
+            if (domain.isSatisfiedBy(comparator)) {
+                return domain;
+            }
+        }
+        return null;
+    }
+
+    static SymmetryDomain get(Mask<?> mask, Symmetry symmetry) {
+        String key = mask.getSize() + "," + symmetry + "," + mask.getSymmetrySettings().getTeamSymmetry();
+        return domains.computeIfAbsent(key, k -> new SymmetryDomain(mask, symmetry));
+    }
+
+    public static void setEnabled(boolean enabled) {
+        SymmetryDomain.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Every computed cell is compared with all of its images, the rest of the grid are images of computed cells
+     */
+    private boolean isSatisfiedBy(CellComparator comparator) {
+        buildDomain();
+        int imagesPerCell = symmetry.getNumSymPoints() - 1;
+        for (int i = 0; i < checkedCells.length; i++) {
+            for (int j = 0; j < imagesPerCell; j++) {
+                if (!comparator.equal(checkedCells[i], checkedImages[i * imagesPerCell + j])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The computed cells are the sources of the copies plus every cell no copy writes, each row keeps the span covering them
+     */
+    private synchronized void buildDomain() {
+        if (checkedCells != null) {
+            return;
+        }
+        boolean[] mirrored = new boolean[size * size];
+        boolean[] computed = new boolean[size * size];
+        for (int i = 0; i < sources.length; i++) {
+            computed[sources[i]] = true;
+            mirrored[destinations[i]] = true;
+        }
+        int imagesPerCell = symmetry.getNumSymPoints() - 1;
+        int[] starts = new int[size];
+        int[] ends = new int[size];
+        int[] cells = new int[size * size];
+        int cellCount = 0;
+        for (int x = 0; x < size; x++) {
+            int rowStart = size;
+            int rowEnd = 0;
+            for (int y = 0; y < size; y++) {
+                int index = x * size + y;
+                if (computed[index] || !mirrored[index]) {
+                    rowStart = StrictMath.min(rowStart, y);
+                    rowEnd = y + 1;
+                    cells[cellCount++] = index;
+                }
+            }
+            starts[x] = StrictMath.min(rowStart, rowEnd);
+            ends[x] = rowEnd;
+        }
+        int[] images = new int[cellCount * imagesPerCell];
+        for (int i = 0; i < cellCount; i++) {
+            ArrayList<SymmetryPoint> symmetryPoints = prototype.getSymmetryPoints(cells[i] / size, cells[i] % size, symmetry);
+            for (int j = 0; j < imagesPerCell; j++) {
+                images[i * imagesPerCell + j] = getIndex(symmetryPoints.get(j));
+            }
+        }
+        rowStarts = starts;
+        rowEnds = ends;
+        checkedImages = images;
+        checkedCells = Arrays.copyOf(cells, cellCount);
+    }
+
+    private int getIndex(SymmetryPoint symmetryPoint) {
+        return (int) symmetryPoint.getLocation().x * size + (int) symmetryPoint.getLocation().y;
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    int getRowStart(int x) {
+        return rowStarts[x];
+    }
+
+    int getRowEnd(int x) {
+        return rowEnds[x];
+    }
+
+    /**
+     * Returns the cells applySymmetry reads, destinations[i] takes the value of sources[i]
+     */
+    int[] getSources() {
+        return sources;
+    }
+
+    int[] getDestinations() {
+        return destinations;
+    }
+
+    /**
+     * Returns for every cell the index of its first symmetry image, the source indices flip remaps with
+     */
+    synchronized int[] getFlipSources() {
+        if (flipSources == null) {
+            int[] indices = new int[size * size];
+            for (int x = 0; x < size; x++) {
+                for (int y = 0; y < size; y++) {
+                    indices[x * size + y] = getIndex(prototype.getSymmetryPoints(x, y, symmetry).get(0));
+                }
+            }
+            flipSources = indices;
+        }
+        return flipSources;
+    }
+
+    /**
+     * Returns the cells inside the symmetry bounds packed the way BinaryMask packs its cells
+     */
+    synchronized long[] getRegionWords() {
+        if (regionWords == null) {
+            long[] words = new long[(size * size + 63) >>> 6];
+            for (int x = prototype.getMinXBound(symmetry); x < prototype.getMaxXBound(symmetry); x++) {
+                for (int y = prototype.getMinYBound(x, symmetry); y < prototype.getMaxYBound(x, symmetry); y++) {
+                    int index = x * size + y;
+                    words[index >>> 6] |= 1L << index;
+                }
+            }
+            regionWords = words;
+        }
+        return regionWords;
+    }
+
+    /**
+     * Returns for every cell inside the bounds the start of its run in getImages, the run ends where the next cell's starts
+     */
+    int[] getImageStarts() {
+        buildImages();
+        return imageStarts;
+    }
+
+    /**
+     * Returns the cells whose value after applySymmetry is the value a bounds cell had before it, grouped by that cell.
+     * The copies only move values, so following them from every cell back to the first one gives its origin
+     */
+    int[] getImages() {
+        buildImages();
+        return images;
+    }
+
+    /**
+     * True when no bounds cell is overwritten by a copy yet passes its value on. A grid applySymmetry has produced then
+     * stays a fixed point of it, so flipping a bounds cell only needs its images flipped instead of every copy redone
+     */
+    boolean isStable() {
+        buildImages();
+        return stable;
+    }
+
+    private synchronized void buildImages() {
+        if (images != null) {
+            return;
+        }
+        long[] region = getRegionWords();
+        int cellCount = size * size;
+        int[] origins = new int[cellCount];
+        for (int i = 0; i < cellCount; i++) {
+            origins[i] = i;
+        }
+        for (int i = 0; i < sources.length; i++) {
+            origins[destinations[i]] = origins[sources[i]];
+        }
+        int[] starts = new int[cellCount + 1];
+        boolean originsStable = true;
+        for (int i = 0; i < cellCount; i++) {
+            int origin = origins[i];
+            if (isInRegion(region, origin)) {
+                starts[origin + 1]++;
+                originsStable &= origins[origin] == origin;
+            }
+        }
+        for (int i = 0; i < cellCount; i++) {
+            starts[i + 1] += starts[i];
+        }
+        int[] cells = new int[starts[cellCount]];
+        int[] next = Arrays.copyOf(starts, cellCount);
+        for (int i = 0; i < cellCount; i++) {
+            int origin = origins[i];
+            if (isInRegion(region, origin)) {
+                cells[next[origin]++] = i;
+            }
+        }
+        imageStarts = starts;
+        stable = originsStable;
+        images = cells;
+    }
+
+    private static boolean isInRegion(long[] region, int index) {
+        return (region[index >>> 6] & (1L << index)) != 0;
+    }
+
+    @FunctionalInterface
+    interface CellComparator {
+        boolean equal(int index, int otherIndex);
+    }
+}
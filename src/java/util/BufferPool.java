@@ -0,0 +1,156 @@
+package util;
+
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size keyed pool of the primitive arrays backing masks so a generation reuses a bounded working set
+ * instead of allocating a fresh full size grid for every op. Borrowed arrays are always zeroed.
+ * A released array must not be touched by the caller afterwards.
+ */
+public strictfp class BufferPool {
+
+    private static final Map<Integer, Deque<long[]>> longBuffers = new ConcurrentHashMap<>();
+    private static final Map<Integer, Deque<float[]>> floatBuffers = new ConcurrentHashMap<>();
+    private static final Map<Integer, Deque<int[]>> intBuffers = new ConcurrentHashMap<>();
+    private static final Map<Integer, Deque<double[]>> doubleBuffers = new ConcurrentHashMap<>();
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong bytesOutstanding = new AtomicLong();
+    private static final AtomicLong bytesPooled = new AtomicLong();
+    private static volatile long softCap = Runtime.getRuntime().maxMemory() / 8;
+
+    public static long[] borrowLongs(int length) {
+        long[] buffer = poll(longBuffers, length, Long.BYTES);
+        if (buffer == null) {
+            buffer = new long[length];
+        } else {
+            Arrays.fill(buffer, 0L);
+        }
+        bytesOutstanding.addAndGet((long) length * Long.BYTES);
+        return buffer;
+    }
+
+    public static float[] borrowFloats(int length) {
+        float[] buffer = poll(floatBuffers, length, Float.BYTES);
+        if (buffer == null) {
+            buffer = new float[length];
+        } else {
+            Arrays.fill(buffer, 0f);
+        }
+        bytesOutstanding.addAndGet((long) length * Float.BYTES);
+        return buffer;
+    }
+
+    public static int[] borrowInts(int length) {
+        int[] buffer = poll(intBuffers, length, Integer.BYTES);
+        if (buffer == null) {
+            buffer = new int[length];
+        } else {
+            Arrays.fill(buffer, 0);
+        }
+        bytesOutstanding.addAndGet((long) length * Integer.BYTES);
+        return buffer;
+    }
+
+    public static double[] borrowDoubles(int length) {
+        double[] buffer = poll(doubleBuffers, length, Double.BYTES);
+        if (buffer == null) {
+            buffer = new double[length];
+        } else {
+            Arrays.fill(buffer, 0d);
+        }
+        bytesOutstanding.addAndGet((long) length * Double.BYTES);
+        return buffer;
+    }
+
+    public static void release(long[] buffer) {
+        if (buffer != null) {
+            offer(longBuffers, buffer, buffer.length, Long.BYTES);
+        }
+    }
+
+    public static void release(float[] buffer) {
+        if (buffer != null) {
+            offer(floatBuffers, buffer, buffer.length, Float.BYTES);
+        }
+    }
+
+    public static void release(int[] buffer) {
+        if (buffer != null) {
+            offer(intBuffers, buffer, buffer.length, Integer.BYTES);
+        }
+    }
+
+    public static void release(double[] buffer) {
+        if (buffer != null) {
+            offer(doubleBuffers, buffer, buffer.length, Double.BYTES);
+        }
+    }
+
+    private static <A> A poll(Map<Integer, Deque<A>> buffers, int length, int elementBytes) {
+        Deque<A> sized = buffers.get(length);
+        A buffer = sized != null ? sized.pollFirst() : null;
+        if (buffer == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+            bytesPooled.addAndGet(-(long) length * elementBytes);
+        }
+        return buffer;
+    }
+
+    private static <A> void offer(Map<Integer, Deque<A>> buffers, A buffer, int length, int elementBytes) {
+        long bytes = (long) length * elementBytes;
+        bytesOutstanding.addAndGet(-bytes);
+        if (bytesPooled.addAndGet(bytes) > softCap) {
+            bytesPooled.addAndGet(-bytes);
+            return;
+        }
+        buffers.computeIfAbsent(length, k -> new ConcurrentLinkedDeque<>()).offerFirst(buffer);
+    }
+
+    /**
+     * Sets the maximum number of bytes kept idle in the pool, released buffers beyond it are left to the garbage collector
+     */
+    public static void setSoftCap(long bytes) {
+        softCap = bytes;
+    }
+
+    public static long getSoftCap() {
+        return softCap;
+    }
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    public static long getBytesOutstanding() {
+        return bytesOutstanding.get();
+    }
+
+    public static long getBytesPooled() {
+        return bytesPooled.get();
+    }
+
+    public static void clear() {
+        longBuffers.clear();
+        floatBuffers.clear();
+        intBuffers.clear();
+        doubleBuffers.clear();
+        bytesPooled.set(0);
+    }
+
+    public static String getStatistics() {
+        return String.format("Buffer pool: %d hits, %d misses, %d MB outstanding, %d MB pooled",
+                getHits(), getMisses(), getBytesOutstanding() >> 20, getBytesPooled() >> 20);
+    }
+}
@@ -0,0 +1,51 @@
+package util;
+
+/**
+ * Fast 64 bit hash of primitive arrays for determinism checks, each word is folded in with a multiply xorshift step and
+ * the result goes through the splitmix64 finalizer. It is not cryptographic, equal hashes only make equal contents likely
+ */
+public strictfp class ContentHash {
+
+    private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private ContentHash() {
+    }
+
+    public static long hash(long[] values, int length) {
+        long hash = length * MULTIPLIER;
+        for (int i = 0; i < length; i++) {
+            hash = fold(hash, values[i]);
+        }
+        return finish(hash);
+    }
+
+    /**
+     * Hashes the raw bits of the floats two to a word
+     */
+    public static long hash(float[] values, int length) {
+        long hash = length * MULTIPLIER;
+        int i = 0;
+        for (; i + 1 < length; i += 2) {
+            hash = fold(hash, (long) Float.floatToRawIntBits(values[i]) << 32 | Float.floatToRawIntBits(values[i + 1]) & 0xFFFFFFFFL);
+        }
+        if (i < length) {
+            hash = fold(hash, Float.floatToRawIntBits(values[i]) & 0xFFFFFFFFL);
+        }
+        return finish(hash);
+    }
+
+    public static String toHex(long hash) {
+        return String.format("%016x", hash);
+    }
+
+    private static long fold(long hash, long value) {
+        hash = (hash ^ value) * MULTIPLIER;
+        return hash ^ hash >>> 29;
+    }
+
+    private static long finish(long hash) {
+        hash = (hash ^ hash >>> 30) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ hash >>> 27) * 0x94D049BB133111EBL;
+        return hash ^ hash >>> 31;
+    }
+}
@@ -0,0 +1,139 @@
+package util;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+/**
+ * Runs per-cell mask kernels over bands of rows (the x index of a mask) on a fork join pool: the pool of the calling
+ * worker when called from one, else the pool bound to the calling thread by {@link #callOn}, else the common pool.
+ * The pipeline context binds the kernel pool of its executor around its entries and orchestration tasks.
+ * Every band writes only its own rows and reads nothing another band writes, so the result is the
+ * same byte for byte no matter how many threads take part or how the rows are split.
+ */
+public strictfp class KernelExecutor {
+
+    public enum Access {
+        /**
+         * Each cell is computed from the same cell only, the kernel may work in place
+         */
+        POINTWISE,
+        /**
+         * Each cell reads the cells up to halo rows away, the kernel must read from a snapshot it does not write
+         */
+        STENCIL,
+        /**
+         * Cells depend on previously written cells, the kernel runs as a single band on the calling thread
+         */
+        SEQUENTIAL
+    }
+
+    @FunctionalInterface
+    public interface RowKernel {
+        /**
+         * Processes the rows from start inclusive to end exclusive
+         */
+        void apply(int start, int end);
+    }
+
+    private static final int MIN_BAND_CELLS = 1 << 14;
+    private static final ThreadLocal<ForkJoinPool> boundPool = new ThreadLocal<>();
+
+    /**
+     * Runs the action with the kernels it starts on the given pool
+     */
+    public static <T> T callOn(ForkJoinPool pool, Supplier<T> action) {
+        ForkJoinPool previous = boundPool.get();
+        boundPool.set(pool);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                boundPool.remove();
+            } else {
+                boundPool.set(previous);
+            }
+        }
+    }
+
+    public static void runOn(ForkJoinPool pool, Runnable action) {
+        callOn(pool, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    private static ForkJoinPool currentPool() {
+        if (ForkJoinTask.inForkJoinPool()) {
+            return ForkJoinTask.getPool();
+        }
+        ForkJoinPool pool = boundPool.get();
+        return pool != null ? pool : ForkJoinPool.commonPool();
+    }
+
+    public static void forEachRow(int size, Access access, RowKernel kernel) {
+        forEachRow(size, 1, access, 0, kernel);
+    }
+
+    public static void forEachRow(int size, Access access, int halo, RowKernel kernel) {
+        forEachRow(size, 1, access, halo, kernel);
+    }
+
+    /**
+     * Splits the rows 0 to size into bands whose starts are multiples of alignment and runs the kernel on each band.
+     * Alignment lets bit packed masks keep every shared word inside one band. Stencil bands are kept at least
+     * twice the halo high so the rows a band reads around itself stay small next to the rows it writes
+     */
+    public static void forEachRow(int size, int alignment, Access access, int halo, RowKernel kernel) {
+        ForkJoinPool executingPool = currentPool();
+        int parallelism = executingPool.getParallelism();
+        if (access == Access.SEQUENTIAL || parallelism <= 1 || size <= alignment) {
+            kernel.apply(0, size);
+            return;
+        }
+        int minRows = StrictMath.max(1, MIN_BAND_CELLS / StrictMath.max(1, size));
+        if (access == Access.STENCIL) {
+            minRows = StrictMath.max(minRows, 2 * halo);
+        }
+        int bandRows = StrictMath.max(minRows, (size + parallelism * 4 - 1) / (parallelism * 4));
+        bandRows = (bandRows + alignment - 1) / alignment * alignment;
+        if (bandRows >= size) {
+            kernel.apply(0, size);
+            return;
+        }
+        BandTask task = new BandTask(kernel, 0, size, bandRows);
+        if (ForkJoinTask.inForkJoinPool()) {
+            task.invoke();
+        } else {
+            executingPool.invoke(task);
+        }
+    }
+
+    private static strictfp class BandTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final RowKernel kernel;
+        private final int start;
+        private final int end;
+        private final int bandRows;
+
+        BandTask(RowKernel kernel, int start, int end, int bandRows) {
+            this.kernel = kernel;
+            this.start = start;
+            this.end = end;
+            this.bandRows = bandRows;
+        }
+
+        @Override
+        protected void compute() {
+            int bands = (end - start + bandRows - 1) / bandRows;
+            if (bands <= 1) {
+                kernel.apply(start, end);
+                return;
+            }
+            int split = start + bands / 2 * bandRows;
+            invokeAll(new BandTask(kernel, start, split, bandRows), new BandTask(kernel, split, end, bandRows));
+        }
+    }
+}
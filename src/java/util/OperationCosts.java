@@ -0,0 +1,52 @@
+package util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Run time estimates in ms of the pipeline operations, keyed by the mask method that added the entry. Starts from
+ * times measured on a 512 map and moves towards the times of the entries that ran in this JVM, so every generation
+ * after the first ranks its entries with its own history
+ */
+public strictfp class OperationCosts {
+
+    private static final double DEFAULT_ESTIMATE = .5;
+    private static final double HISTORY_WEIGHT = .25;
+    private static final Map<String, Double> estimates = new HashMap<>();
+    private static final Map<String, Double> history = new ConcurrentHashMap<>();
+
+    static {
+        estimates.put("maskToMountains", 87d);
+        estimates.put("removeAreasSmallerThan", 34d);
+        estimates.put("fillGaps", 28d);
+        estimates.put("widenGaps", 23d);
+        estimates.put("gradient", 8d);
+        estimates.put("maskToOceanHeights", 7.5);
+        estimates.put("deflate", 6.8);
+        estimates.put("inflate", 4.8);
+        estimates.put("grow", 3.7);
+        estimates.put("setSize", 3.5);
+        estimates.put("acid", 3.5);
+        estimates.put("smooth", 3.4);
+        estimates.put("outline", 2.6);
+        estimates.put("erode", 2.1);
+        estimates.put("fillCenter", 1.5);
+        estimates.put("<init>", 1.5);
+    }
+
+    private OperationCosts() {
+    }
+
+    public static double estimate(String operation) {
+        Double recorded = history.get(operation);
+        if (recorded != null) {
+            return recorded;
+        }
+        return estimates.getOrDefault(operation, DEFAULT_ESTIMATE);
+    }
+
+    public static void record(String operation, double millis) {
+        history.merge(operation, millis, (recorded, measured) -> recorded + (measured - recorded) * HISTORY_WEIGHT);
+    }
+}
@@ -0,0 +1,466 @@
+package util;
+
+import generator.MapGenerator;
+import map.ConcurrentBinaryMask;
+import map.ConcurrentFloatMask;
+import map.ConcurrentMask;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * The pipeline of one map generation: its entries, the future that starts them and the hashes of their results. Every
+ * concurrent mask belongs to the context it was made in, so generations with their own contexts share no state.
+ * Entries run on the task executor of the context's {@link PipelineExecutor} and hash their result right after, the
+ * hash is a cheap pass over the primitive cells and a hash running after the entry would have to hold its snapshot.
+ * At the start every entry is ranked by the estimated time of the longest path from it to the end of the pipeline, and
+ * ready entries queue by rank so the work on the critical path takes the free threads first
+ */
+public strictfp class PipelineContext {
+
+    /**
+     * Which entries get their result hashed for the determinism check
+     */
+    public enum HashMode {
+        OFF,
+        /**
+         * Every {@link #HASH_SAMPLE_INTERVAL}th entry
+         */
+        SAMPLED,
+        FULL
+    }
+
+    public static final int HASH_SAMPLE_INTERVAL = 8;
+
+    private final List<Entry> pipeline = new ArrayList<>();
+    private final CompletableFuture<List<ConcurrentMask>> started = new CompletableFuture<>();
+    private final boolean debug;
+    private final PipelineExecutor executor;
+    private final HashMode hashMode;
+    private final Executor taskExecutor;
+    private final Executor orchestrationExecutor;
+    private final PriorityBlockingQueue<ReadyTask> readyTasks = new PriorityBlockingQueue<>();
+    private String[] hashArray;
+    private List<Entry> criticalPath = Collections.emptyList();
+    private long startTime;
+
+    public PipelineContext(boolean debug, PipelineExecutor executor, HashMode hashMode) {
+        this.debug = debug;
+        this.executor = executor;
+        this.hashMode = hashMode;
+        this.taskExecutor = bindKernels(executor.getTaskExecutor());
+        this.orchestrationExecutor = bindKernels(executor.getOrchestrationExecutor());
+    }
+
+    /**
+     * Wraps the executor so the kernels of every task it runs go to the kernel pool of this context's executor
+     */
+    private Executor bindKernels(Executor target) {
+        return task -> target.execute(() -> KernelExecutor.runOn(executor.getKernelPool(), task));
+    }
+
+    public ConcurrentBinaryMask add(ConcurrentBinaryMask executingMask, List<ConcurrentMask> dep, Function<List<ConcurrentMask>, ?> function) {
+        addInternal(executingMask, dep, function);
+        return executingMask;
+    }
+
+    public ConcurrentFloatMask add(ConcurrentFloatMask executingMask, List<ConcurrentMask> dep, Function<List<ConcurrentMask>, ?> function) {
+        addInternal(executingMask, dep, function);
+        return executingMask;
+    }
+
+    private void addInternal(ConcurrentMask executingMask, List<ConcurrentMask> dep, Function<List<ConcurrentMask>, ?> function) {
+        int index = pipeline.size();
+        boolean addedAfterPipelineStart = isStarted();
+        final String callingLine = Util.getStackTraceLineInClass(MapGenerator.class);
+        final String callingMethod = Util.getStackTraceMethod(executingMask.getClass());
+
+        List<Entry> dependencies = getDependencyList(dep);
+        boolean hashed = isHashed(index);
+        Entry entry = new Entry(index, executingMask, dependencies, callingMethod);
+        CompletableFuture<?> newFuture = getDependencyFuture(dependencies, executingMask)
+                .thenApply(res -> {
+                    if (addedAfterPipelineStart && !executingMask.getName().equals("new binary mask") && !executingMask.getName().equals("new float mask")) {
+                        System.err.println("Running non deterministic task added after pipeline start!  " + executingMask.getName());
+                    }
+                    return res;
+                })
+                .thenApplyAsync(m -> {
+                    long startTime = System.currentTimeMillis();
+                    long startNanos = System.nanoTime();
+                    prepareWrite(dependencies, executingMask);
+                    Object res = function.apply(m);
+                    releaseSnapshots(dependencies, executingMask);
+                    long functionTime = System.currentTimeMillis() - startTime;
+                    entry.finish(startNanos);
+                    startTime = System.currentTimeMillis();
+                    if (hashed) {
+                        hashArray[index] = String.format("%s,\t%s,\t%s,\t%s%n", executingMask.toHash(), callingLine, executingMask.getName(), callingMethod);
+                    }
+                    long hashTime = System.currentTimeMillis() - startTime;
+                    if (debug) {
+                        System.out.printf("Done: function time %4d ms, hash time %4d ms, %s, %s(%d)->%s\n",
+                                functionTime,
+                                hashTime,
+                                callingLine,
+                                executingMask.getName(),
+                                index,
+                                callingMethod
+                        );
+                    }
+                    return res;
+                }, task -> dispatch(entry, task));
+        entry.setFuture(newFuture);
+
+        entry.dependencies.forEach(d -> d.dependants.add(entry));
+        entry.index = pipeline.size();
+        pipeline.add(entry);
+
+        if (debug) {
+            System.out.printf("%d: New pipeline entry:   %s,  %s,  deps:[%s]\n",
+                    index,
+                    executingMask.getName(),
+                    new Throwable().getStackTrace()[2].getMethodName(),
+                    dependencies.stream().map(e -> e.getExecutingMask().getName() + "(" + pipeline.indexOf(e) + ")").reduce((acc, r) -> acc + ", " + r).orElse("none")
+            );
+        }
+
+    }
+
+    /**
+     * Queues a ready entry by its rank, and every pool thread the queue hands a task to takes the highest ranked one
+     */
+    private void dispatch(Entry entry, Runnable task) {
+        readyTasks.add(new ReadyTask(entry, task));
+        taskExecutor.execute(() -> readyTasks.poll().run());
+    }
+
+    /**
+     * Ranks every entry by its estimated cost plus the highest rank among its dependants. Dependants always come later
+     * in the pipeline, so one backwards pass ranks them all. The critical path follows the highest ranks from the top
+     */
+    private void rankEntries() {
+        Entry top = null;
+        for (int i = pipeline.size() - 1; i >= 0; i--) {
+            Entry entry = pipeline.get(i);
+            double downstream = entry.dependants.stream().mapToDouble(Entry::getRank).max().orElse(0);
+            entry.rank = entry.cost + downstream;
+            if (top == null || entry.rank > top.rank) {
+                top = entry;
+            }
+        }
+        List<Entry> path = new ArrayList<>();
+        for (Entry entry = top; entry != null; entry = entry.dependants.stream().max(Comparator.comparingDouble(Entry::getRank)).orElse(null)) {
+            path.add(entry);
+        }
+        criticalPath = path;
+    }
+
+    private boolean isHashed(int index) {
+        switch (hashMode) {
+            case FULL:
+                return true;
+            case SAMPLED:
+                return index % HASH_SAMPLE_INTERVAL == 0;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * An entry that writes its mask again while the snapshots of its previous entry are still read gets its own copy first
+     */
+    private static void prepareWrite(List<Entry> dependencies, ConcurrentMask executingMask) {
+        for (Entry dependency : dependencies) {
+            if (dependency.executingMask == executingMask) {
+                dependency.prepareWrite();
+            }
+        }
+    }
+
+    /**
+     * A finished entry is done reading the snapshots of the entries it depends on, once per entry however often it is listed
+     */
+    private static void releaseSnapshots(List<Entry> dependencies, ConcurrentMask executingMask) {
+        Set<Entry> released = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Entry dependency : dependencies) {
+            if (dependency.executingMask != executingMask && released.add(dependency)) {
+                dependency.releaseSnapshot();
+            }
+        }
+    }
+
+    public void start() {
+        System.out.println("Starting pipeline");
+        hashArray = new String[getPipelineSize()];
+        rankEntries();
+        startTime = System.nanoTime();
+        started.complete(null);
+    }
+
+    public void stop() {
+        pipeline.forEach(e -> e.getFuture().join());
+        System.out.println("pipeline stopped!");
+        if (debug) {
+            System.out.println(BufferPool.getStatistics());
+            printSchedule();
+        }
+    }
+
+    private void printSchedule() {
+        long makespan = pipeline.stream().mapToLong(Entry::getFinishTime).max().orElse(startTime) - startTime;
+        System.out.printf("Critical path: %d entries, estimated %.1f ms, ran for %.1f ms, makespan %.1f ms on %d threads\n",
+                criticalPath.size(),
+                criticalPath.isEmpty() ? 0 : criticalPath.get(0).rank,
+                criticalPath.stream().mapToLong(Entry::getRunTime).sum() / 1e6,
+                makespan / 1e6,
+                executor.getParallelism()
+        );
+        System.out.printf("Critical path: %s\n", criticalPath.stream()
+                .map(e -> e.getOperation() + "(" + e.getIndex() + ")")
+                .collect(Collectors.joining(" -> ")));
+    }
+
+    public boolean isStarted() {
+        return started.isDone();
+    }
+
+    public void await(ConcurrentMask... masks) {
+        getDependencyList(Arrays.asList(masks)).get(0).getFuture().join();
+        getDependencyList(Arrays.asList(masks)).forEach(e -> e.getFuture().join());
+    }
+
+    public List<Entry> getDependencyList(List<ConcurrentMask> requiredMasks) {
+        List<Entry> res = new ArrayList<>();
+
+
+        for (ConcurrentMask requiredMask : requiredMasks) {
+            for (int i = pipeline.size() - 1; i >= 0; i--) {
+                if (requiredMask == pipeline.get(i).executingMask) {
+                    res.add(pipeline.get(i));
+                    break;
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Returns a future that completes once all dependencies are met and returns their result
+     *
+     * @param dependencyList
+     * @return a list of the results, DO NOT MODIFY THOSE!, may be mocks
+     */
+    public CompletableFuture<List<ConcurrentMask>> getDependencyFuture(List<Entry> dependencyList, ConcurrentMask requestingMask) {
+        if (pipeline.isEmpty() || dependencyList.isEmpty()) {
+            return started;
+        }
+
+        CompletableFuture<?>[] futures = dependencyList.stream().map(Entry::getFuture).toArray(CompletableFuture<?>[]::new);
+
+        if (futures.length == 0) {
+            return started;
+        }
+
+        return CompletableFuture.allOf(futures)
+                .thenApplyAsync(aVoid ->
+                        dependencyList.stream()
+                                .map(e -> e.getResult(requestingMask))
+                                .collect(Collectors.toList()), taskExecutor
+                );
+    }
+
+    public PipelineExecutor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Returns the task executor, running kernels on the executor's kernel pool
+     */
+    public Executor getTaskExecutor() {
+        return taskExecutor;
+    }
+
+    /**
+     * Returns the orchestration executor, running kernels on the executor's kernel pool
+     */
+    public Executor getOrchestrationExecutor() {
+        return orchestrationExecutor;
+    }
+
+    public int getPipelineSize() {
+        return pipeline.size();
+    }
+
+    public HashMode getHashMode() {
+        return hashMode;
+    }
+
+    /**
+     * Returns the entries of the longest estimated path ranked at the start
+     */
+    public List<Entry> getCriticalPath() {
+        return criticalPath;
+    }
+
+    /**
+     * Returns the hash line of every entry, null for the entries the hash mode skips
+     */
+    public String[] getHashArray() {
+        return hashArray;
+    }
+
+    public void toFile(Path path) throws IOException {
+        Files.deleteIfExists(path);
+        File outFile = path.toFile();
+        boolean status = outFile.createNewFile();
+        FileOutputStream out = new FileOutputStream(outFile);
+        for (String s : hashArray) {
+            if (s != null) {
+                out.write(s.getBytes());
+            }
+        }
+        out.flush();
+        out.close();
+    }
+
+    /**
+     * A pipeline step. Once it is done, the dependants that read its mask share one snapshot of it, counted by readers.
+     * The mask is copied only when its next entry writes it while readers remain, the snapshot then keeps the old
+     * cells and the last reader returns them to the pool. Entries added after the start are never ranked and run before
+     * all others, the map is already waiting on them
+     */
+    public static strictfp class Entry {
+        private final ConcurrentMask executingMask;
+        private final Set<Entry> dependencies;
+        private final String operation;
+        private final double cost;
+        private CompletableFuture<?> future;
+        private final Set<Entry> dependants = new HashSet<>();
+        private ConcurrentMask snapshot;
+        private int readers;
+        private boolean detached;
+        private volatile double rank = Double.POSITIVE_INFINITY;
+        private volatile long runTime;
+        private volatile long finishTime;
+        private int index;
+
+        public Entry(int index, ConcurrentMask executingMask, Collection<Entry> dependencies, String operation) {
+            this.index = index;
+            this.executingMask = executingMask;
+            this.dependencies = new HashSet<>(dependencies);
+            this.operation = operation;
+            this.cost = OperationCosts.estimate(operation);
+        }
+
+        private void setFuture(CompletableFuture<?> future) {
+            this.future = future.thenRun(this::share);
+        }
+
+        private void finish(long startTime) {
+            finishTime = System.nanoTime();
+            runTime = finishTime - startTime;
+            OperationCosts.record(operation, runTime / 1e6);
+        }
+
+        private synchronized void share() {
+            readers = (int) dependants.stream().filter(d -> d.getExecutingMask() != executingMask).count();
+            if (readers > 0) {
+                snapshot = executingMask.snapshot();
+            }
+        }
+
+        private synchronized void prepareWrite() {
+            if (readers > 0 && !detached) {
+                executingMask.detach();
+                detached = true;
+            }
+        }
+
+        private synchronized void releaseSnapshot() {
+            readers--;
+            if (readers == 0) {
+                if (detached) {
+                    snapshot.release();
+                }
+                snapshot = null;
+            }
+        }
+
+        public synchronized ConcurrentMask getResult(ConcurrentMask requestingMask) {
+            if (requestingMask == executingMask) {
+                return executingMask;
+            }
+            if (snapshot == null) {
+                new RuntimeException(String.format("No snapshot left: %d, requested from: %s", index, requestingMask.getName())).printStackTrace();
+                return null;
+            }
+            return snapshot;
+        }
+
+        public CompletableFuture<?> getFuture() {
+            return future;
+        }
+
+        public ConcurrentMask getExecutingMask() {
+            return executingMask;
+        }
+
+        public String getOperation() {
+            return operation;
+        }
+
+        public double getRank() {
+            return rank;
+        }
+
+        public long getRunTime() {
+            return runTime;
+        }
+
+        public long getFinishTime() {
+            return finishTime;
+        }
+
+        public Set<Entry> getDependencies() {
+            return dependencies;
+        }
+
+        public Set<Entry> getDependants() {
+            return dependants;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+    }
+
+    private static strictfp class ReadyTask implements Comparable<ReadyTask> {
+        private final Entry entry;
+        private final Runnable task;
+
+        private ReadyTask(Entry entry, Runnable task) {
+            this.entry = entry;
+            this.task = task;
+        }
+
+        private void run() {
+            task.run();
+        }
+
+        @Override
+        public int compareTo(ReadyTask other) {
+            int byRank = Double.compare(other.entry.rank, entry.rank);
+            return byRank != 0 ? byRank : Integer.compare(entry.index, other.entry.index);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package util;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Where a pipeline runs its work: the mask entries on a bounded task executor and the orchestration tasks, which block
+ * while they wait on masks, on an executor of their own so they never take a thread the entries need.
+ * Every generation owning its executor keeps generators in one JVM from starving each other in the common pool.
+ */
+public interface PipelineExecutor extends AutoCloseable {
+
+    enum Mode {
+        /**
+         * Entries on a dedicated fork join pool, orchestration on daemon platform threads
+         */
+        FORK_JOIN,
+        /**
+         * Entries on a fixed pool of daemon threads, orchestration on daemon platform threads
+         */
+        FIXED,
+        /**
+         * Entries on a dedicated fork join pool, orchestration on virtual threads where the JDK has them and on daemon
+         * platform threads otherwise
+         */
+        VIRTUAL
+    }
+
+    static PipelineExecutor create(Mode mode, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        ForkJoinPool kernels = new ForkJoinPool(parallelism);
+        ExecutorService tasks = mode == Mode.FIXED
+                ? Executors.newFixedThreadPool(parallelism, daemonThreads("pipeline-task-"))
+                : kernels;
+        ExecutorService orchestration = mode == Mode.VIRTUAL ? newVirtualThreadExecutor() : null;
+        if (orchestration == null) {
+            orchestration = Executors.newCachedThreadPool(daemonThreads("pipeline-orchestration-"));
+        }
+        return new PooledPipelineExecutor(mode, parallelism, tasks, orchestration, kernels);
+    }
+
+    static PipelineExecutor create() {
+        return create(Mode.FORK_JOIN, Runtime.getRuntime().availableProcessors());
+    }
+
+    Mode getMode();
+
+    int getParallelism();
+
+    /**
+     * Runs the pipeline entries, it is bounded to the parallelism and never blocks on other entries
+     */
+    Executor getTaskExecutor();
+
+    /**
+     * Runs the tasks that wait on finished masks and then build the map from them
+     */
+    Executor getOrchestrationExecutor();
+
+    /**
+     * Runs the row bands of the mask kernels this executor's work starts, bounded to the parallelism. It is the task
+     * executor itself unless the entries run on a fixed pool
+     */
+    ForkJoinPool getKernelPool();
+
+    @Override
+    void close();
+
+    /**
+     * Returns a virtual thread per task executor, or null on JDKs without virtual threads. Looked up reflectively as
+     * the build targets a JDK that predates them
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
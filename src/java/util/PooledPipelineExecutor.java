@@ -0,0 +1,32 @@
+package util;
+
+import lombok.Getter;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+@Getter
+strictfp class PooledPipelineExecutor implements PipelineExecutor {
+
+    private final Mode mode;
+    private final int parallelism;
+    private final ExecutorService taskExecutor;
+    private final ExecutorService orchestrationExecutor;
+    private final ForkJoinPool kernelPool;
+
+    PooledPipelineExecutor(Mode mode, int parallelism, ExecutorService taskExecutor, ExecutorService orchestrationExecutor,
+                           ForkJoinPool kernelPool) {
+        this.mode = mode;
+        this.parallelism = parallelism;
+        this.taskExecutor = taskExecutor;
+        this.orchestrationExecutor = orchestrationExecutor;
+        this.kernelPool = kernelPool;
+    }
+
+    @Override
+    public void close() {
+        orchestrationExecutor.shutdown();
+        taskExecutor.shutdown();
+        kernelPool.shutdown();
+    }
+}
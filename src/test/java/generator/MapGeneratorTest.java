@@ -7,7 +7,6 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import util.FileUtils;
-import util.Pipeline;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -156,14 +155,12 @@ public class MapGeneratorTest {
     public void TestDeterminism() throws IOException {
         instance.interpretArguments(keywordArgs);
         SCMap map1 = instance.generate();
-        String[] hashArray1 = Pipeline.hashArray.clone();
+        String[] hashArray1 = instance.getPipeline().getHashArray().clone();
 
         for (int i = 0; i < 10; i++) {
-            Pipeline.reset();
-
             instance.interpretArguments(keywordArgs);
             SCMap map2 = instance.generate();
-            String[] hashArray2 = Pipeline.hashArray.clone();
+            String[] hashArray2 = instance.getPipeline().getHashArray().clone();
 
             assertArrayEquals(hashArray1, hashArray2);
             assertEquals(map1.toString(), map2.toString());
@@ -193,8 +190,6 @@ public class MapGeneratorTest {
         instance.interpretArguments(keywordArgs);
         SCMap map1 = instance.generate();
 
-        Pipeline.reset();
-
         String[] args = {folderPath, b32MapName};
         instance.interpretArguments(args);
         SCMap map2 = instance.generate();
@@ -225,8 +220,6 @@ public class MapGeneratorTest {
         instance.interpretArguments(args);
         SCMap map1 = instance.generate();
 
-        Pipeline.reset();
-
         args = new String[]{folderPath, b32MapName};
         instance.interpretArguments(args);
         SCMap map2 = instance.generate();
@@ -252,7 +245,6 @@ public class MapGeneratorTest {
 
     @After
     public void cleanup() {
-        Pipeline.reset();
         FileUtils.deleteRecursiveIfExists(Paths.get(instance.getMapName()));
     }
 
@@ -0,0 +1,105 @@
+package map;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConvolutionTest {
+
+    private static final int[] SIZES = {1, 16, 33, 65};
+    private static final int[] KERNEL_SIZES = {1, 2, 3, 8, 17};
+
+    private final Random random = new Random(0);
+
+    @Test
+    public void TestDirectMatchesDefinition() {
+        for (int size : SIZES) {
+            for (int kernelSize : KERNEL_SIZES) {
+                float[] values = randomValues(size * size);
+                float[] kernel = randomValues(kernelSize * kernelSize);
+                float[] result = Convolution.convolveDirect(values, size, kernel, kernelSize);
+                int center = kernelSize / 2;
+                for (int x = 0; x < size; x++) {
+                    for (int y = 0; y < size; y++) {
+                        double sum = 0;
+                        for (int i = 0; i < kernelSize; i++) {
+                            for (int j = 0; j < kernelSize; j++) {
+                                int sourceX = x + center - i;
+                                int sourceY = y + center - j;
+                                if (sourceX >= 0 && sourceX < size && sourceY >= 0 && sourceY < size) {
+                                    sum += kernel[i * kernelSize + j] * values[sourceX * size + sourceY];
+                                }
+                            }
+                        }
+                        assertEquals(sum, result[x * size + y], 1e-4);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void TestFFTWithinTolerance() {
+        for (int size : SIZES) {
+            for (int kernelSize : KERNEL_SIZES) {
+                float[] values = randomValues(size * size);
+                float[] kernel = randomValues(kernelSize * kernelSize);
+                assertWithinTolerance(Convolution.convolveDirect(values, size, kernel, kernelSize),
+                        Convolution.convolveFFT(values, size, kernel, kernelSize), values, kernel);
+            }
+        }
+    }
+
+    @Test
+    public void TestSeparableMatchesOuterProduct() {
+        for (int size : SIZES) {
+            for (int kernelSize : KERNEL_SIZES) {
+                float[] values = randomValues(size * size);
+                float[] rowKernel = randomValues(kernelSize);
+                float[] columnKernel = randomValues(kernelSize);
+                float[] kernel = new float[kernelSize * kernelSize];
+                for (int i = 0; i < kernelSize; i++) {
+                    for (int j = 0; j < kernelSize; j++) {
+                        kernel[i * kernelSize + j] = columnKernel[i] * rowKernel[j];
+                    }
+                }
+                assertWithinTolerance(Convolution.convolveDirect(values, size, kernel, kernelSize),
+                        Convolution.convolveSeparable(values, size, rowKernel, columnKernel), values, kernel);
+            }
+        }
+    }
+
+    @Test
+    public void TestStrategy() {
+        assertEquals(Convolution.Strategy.SEPARABLE, Convolution.getStrategy(513, 65, true, true));
+        assertEquals(Convolution.Strategy.DIRECT, Convolution.getStrategy(513, 65, false, false));
+        assertEquals(Convolution.Strategy.DIRECT, Convolution.getStrategy(513, 3, false, true));
+        assertEquals(Convolution.Strategy.FFT, Convolution.getStrategy(513, 65, false, true));
+    }
+
+    private void assertWithinTolerance(float[] expected, float[] actual, float[] values, float[] kernel) {
+        float kernelWeight = 0;
+        for (float weight : kernel) {
+            kernelWeight += StrictMath.abs(weight);
+        }
+        float maxValue = 0;
+        for (float value : values) {
+            maxValue = StrictMath.max(maxValue, StrictMath.abs(value));
+        }
+        float tolerance = Convolution.FFT_TOLERANCE * kernelWeight * maxValue;
+        for (int i = 0; i < expected.length; i++) {
+            assertTrue(String.format("index %d: %f vs %f", i, expected[i], actual[i]), StrictMath.abs(expected[i] - actual[i]) <= tolerance);
+        }
+    }
+
+    private float[] randomValues(int length) {
+        float[] values = new float[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = random.nextFloat() * 2 - 1;
+        }
+        return values;
+    }
+}
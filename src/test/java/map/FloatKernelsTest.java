@@ -0,0 +1,91 @@
+package map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeNotNull;
+
+public class FloatKernelsTest {
+
+    private static final float[] SPECIAL_VALUES = {0f, -0f, 1f, -1f, Float.NaN, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY,
+            Float.MIN_VALUE, -Float.MIN_VALUE, Float.MAX_VALUE, -Float.MAX_VALUE, Float.MIN_NORMAL, .5f, 2f};
+    private static final int[] LENGTHS = {0, 1, 3, 7, 8, 15, 16, 17, 31, 64, 65, 257, 1000};
+
+    private final Random random = new Random(0);
+    private FloatKernels scalar;
+    private FloatKernels vector;
+
+    @Before
+    public void setUp() {
+        scalar = FloatKernels.getScalar();
+        vector = FloatKernels.getVector();
+        assumeNotNull(vector);
+    }
+
+    @Test
+    public void TestScalarOps() {
+        for (int length : LENGTHS) {
+            for (int offset = 0; offset < 3 && offset <= length; offset++) {
+                for (float value : SPECIAL_VALUES) {
+                    int start = offset;
+                    float[] values = randomValues(length);
+                    assertSame(values, start, length, (kernels, array) -> kernels.add(array, start, length, value));
+                    assertSame(values, start, length, (kernels, array) -> kernels.multiply(array, start, length, value));
+                    assertSame(values, start, length, (kernels, array) -> kernels.clampMin(array, start, length, value));
+                    assertSame(values, start, length, (kernels, array) -> kernels.clampMax(array, start, length, value));
+                    assertSame(values, start, length, (kernels, array) -> kernels.threshold(array, start, length, value));
+                    assertEquals(Float.floatToIntBits(scalar.min(values, start, length, value)), Float.floatToIntBits(vector.min(values, start, length, value)));
+                    assertEquals(Float.floatToIntBits(scalar.max(values, start, length, value)), Float.floatToIntBits(vector.max(values, start, length, value)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void TestArrayOps() {
+        for (int length : LENGTHS) {
+            for (int offset = 0; offset < 3 && offset <= length; offset++) {
+                int start = offset;
+                float[] values = randomValues(length);
+                float[] other = randomValues(length);
+                assertSame(values, start, length, (kernels, array) -> kernels.add(array, other, start, length));
+                assertSame(values, start, length, (kernels, array) -> kernels.subtract(array, other, start, length));
+                assertSame(values, start, length, (kernels, array) -> kernels.multiply(array, other, start, length));
+                assertSame(values, start, length, (kernels, array) -> kernels.min(array, other, start, length));
+                assertSame(values, start, length, (kernels, array) -> kernels.max(array, other, start, length));
+                assertSame(values, start, length, (kernels, array) -> kernels.sqrt(array, start, length));
+            }
+        }
+    }
+
+    private float[] randomValues(int length) {
+        float[] values = new float[length];
+        for (int i = 0; i < length; i++) {
+            if (random.nextInt(4) == 0) {
+                values[i] = SPECIAL_VALUES[random.nextInt(SPECIAL_VALUES.length)];
+            } else {
+                values[i] = (random.nextFloat() - .5f) * (1 << random.nextInt(20));
+            }
+        }
+        return values;
+    }
+
+    private void assertSame(float[] values, int start, int end, KernelCall call) {
+        float[] expected = Arrays.copyOf(values, values.length);
+        float[] actual = Arrays.copyOf(values, values.length);
+        call.apply(scalar, expected);
+        call.apply(vector, actual);
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(String.format("index %d of [%d, %d)", i, start, end), Float.floatToIntBits(expected[i]), Float.floatToIntBits(actual[i]));
+        }
+    }
+
+    @FunctionalInterface
+    private interface KernelCall {
+        void apply(FloatKernels kernels, float[] values);
+    }
+}
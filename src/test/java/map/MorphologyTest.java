@@ -0,0 +1,42 @@
+package map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class MorphologyTest {
+
+    private static final int[] SIZES = {64, 128, 257};
+    private static final float[] RADII = {1, 2.5f, 12, 23.5f, 24, 24.5f, 32};
+    private static final float[] DENSITIES = {.02f, .5f};
+    private static final SymmetrySettings NO_SYMMETRY = new SymmetrySettings(Symmetry.NONE, Symmetry.NONE, Symmetry.NONE);
+
+    @Test
+    public void TestDistanceSpreadMatchesDiscSpread() {
+        for (int size : SIZES) {
+            for (float density : DENSITIES) {
+                BinaryMask source = new BinaryMask(size, 0L, NO_SYMMETRY);
+                source.randomize(density).smooth(2);
+                for (float radius : RADII) {
+                    assertSpreadsMatch(source, radius);
+                }
+                assertSpreadsMatch(source, size / 2f);
+            }
+        }
+    }
+
+    private void assertSpreadsMatch(BinaryMask source, float radius) {
+        for (boolean value : new boolean[]{true, false}) {
+            BinaryMask disc = source.copy();
+            BinaryMask distance = source.copy();
+            disc.spreadByDisc(value, radius);
+            distance.spreadByDistance(value, radius);
+            for (int x = 0; x < source.getSize(); x++) {
+                for (int y = 0; y < source.getSize(); y++) {
+                    assertEquals(String.format("size %d radius %.1f value %b at %d, %d", source.getSize(), radius, value, x, y),
+                            disc.getBit(x, y), distance.getBit(x, y));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ResamplingTest {
+
+    private static final int[][] SHRINKS = {{257, 16}, {257, 64}, {129, 8}, {513, 32}, {256, 16}, {256, 32}};
+    private static final SymmetrySettings NO_SYMMETRY = new SymmetrySettings(Symmetry.NONE, Symmetry.NONE, Symmetry.NONE);
+
+    @Test
+    public void TestShrinkCheckerboardMatchesBlockAverage() {
+        for (int[] shrink : SHRINKS) {
+            assertShrinkMatchesBlockAverage(shrink[0], shrink[1], (x, y) -> (x + y) % 2 == 0 ? 1f : 0f);
+        }
+    }
+
+    @Test
+    public void TestShrinkGradientMatchesBlockAverage() {
+        for (int[] shrink : SHRINKS) {
+            int oldSize = shrink[0];
+            assertShrinkMatchesBlockAverage(oldSize, shrink[1], (x, y) -> (float) (x + 2 * y) / (3 * oldSize));
+        }
+    }
+
+    private void assertShrinkMatchesBlockAverage(int oldSize, int size, Field field) {
+        FloatMask mask = new FloatMask(oldSize, 0L, NO_SYMMETRY);
+        for (int x = 0; x < oldSize; x++) {
+            for (int y = 0; y < oldSize; y++) {
+                mask.set(x, y, field.get(x, y));
+            }
+        }
+        float[][] expected = blockAverage(mask, size);
+        mask.shrink2(size);
+        assertEquals(size, mask.getSize());
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                assertEquals(String.format("%d to %d at %d, %d", oldSize, size, x, y), expected[x][y], mask.get(x, y), .02f);
+            }
+        }
+    }
+
+    /**
+     * The block average shrink2 used before the resampling, divided by the cells summed rather than the fractional block
+     * area so it stays a mean when the sizes do not divide
+     */
+    private static float[][] blockAverage(FloatMask mask, int size) {
+        int oldSize = mask.getSize();
+        int block = oldSize / size;
+        float[][] smallMask = new float[size][size];
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                float sum = 0;
+                for (int z = 0; z < block; z++) {
+                    for (int w = 0; w < block; w++) {
+                        sum += mask.get((x * oldSize / size) + z, (y * oldSize / size) + w);
+                    }
+                }
+                smallMask[x][y] = sum / (block * block);
+            }
+        }
+        return smallMask;
+    }
+
+    private interface Field {
+        float get(int x, int y);
+    }
+}
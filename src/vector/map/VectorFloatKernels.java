@@ -0,0 +1,153 @@
+package map;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API backend, only lane wise IEEE ops and order free reductions are used so the results match the scalar loops
+ */
+public strictfp class VectorFloatKernels implements FloatKernels {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+    private final ScalarFloatKernels scalar = ScalarFloatKernels.INSTANCE;
+
+    @Override
+    public void add(float[] values, int start, int end, float value) {
+        int i = start;
+        for (int bound = loopBound(start, end); i < bound; i += SPECIES.length()) {
+            FloatVector.fromArray(SPECIES, values, i).add(value).intoArray(values, i);
+        }
+        scalar.add(values, i, end, value);
+    }
+
+    @Override
+    public void add(float[] values, float[] other, int start, int end) {
+        int i = start;
+        for (int bound = loopBound(start, end); i < bound; i += SPECIES.length()) {
+            FloatVector.fromArray(SPECIES, values, i).add(FloatVector.fromArray(SPECIES, other, i)).intoArray(values, i);
+        }
+        scalar.add(values, other, i, end);
+    }
+
+    @Override
+    public void subtract(float[] values, float[] other, int start, int end) {
+        int i = start;
+        for (int bound = loopBound(start, end); i < bound; i += SPECIES.length()) {
+            FloatVector.fromArray(SPECIES, values, i).sub(FloatVector.fromArray(SPECIES, other, i)).intoArray(values, i);
+        }
+        scalar.subtract(values, other, i, end);
+    }
+
+    @Override
+    public void multiply(float[] values, int start, int end, float value) {
+        int i = start;
+        for (int bound = loopBound(start, end); i < bound; i += SPECIES.length()) {
+            FloatVector.fromArray(SPECIES, values, i).mul(value).intoArray(values, i);
+        }
+        scalar.multiply(values, i, end, value);
+    }
+
+    @Override
+    public void multiply(float[] values, float[] other, int start, int end) {
+        int i = start;
+        for (int bound = loopBound(start, end); i < bound; i += SPECIES.length()) {
+            FloatVector.fromArray(SPECIES, values, i).mul(FloatVector.fromArray(SPECIES, other, i)).intoArray(values, i);
+        }
+        scalar.multiply(values, other, i, end);
+    }
+
+    @Override
+    public void min(float[] values, float[] other, int start, int end) {
+        int i = start;
+        for (int bound = loopBound(start, end); i < bound; i += SPECIES.length()) {
+            FloatVector.fromArray(SPECIES, values, i).min(FloatVector.fromArray(SPECIES, other, i)).intoArray(values, i);
+        }
+        scalar.min(values, other, i, end);
+    }
+
+    @Override
+    public void max(float[] values, float[] other, int start, int end) {
+        int i = start;
+        for (int bound = loopBound(start, end); i < bound; i += SPECIES.length()) {
+            FloatVector.fromArray(SPECIES, values, i).max(FloatVector.fromArray(SPECIES, other, i)).intoArray(values, i);
+        }
+        scalar.max(values, other, i, end);
+    }
+
+    @Override
+    public void clampMin(float[] values, int start, int end, float value) {
+        int i = start;
+        for (int bound = loopBound(start, end); i < bound; i += SPECIES.length()) {
+            FloatVector.fromArray(SPECIES, values, i).max(value).intoArray(values, i);
+        }
+        scalar.clampMin(values, i, end, value);
+    }
+
+    @Override
+    public void clampMax(float[] values, int start, int end, float value) {
+        int i = start;
+        for (int bound = loopBound(start, end); i < bound; i += SPECIES.length()) {
+            FloatVector.fromArray(SPECIES, values, i).min(value).intoArray(values, i);
+        }
+        scalar.clampMax(values, i, end, value);
+    }
+
+    @Override
+    public void threshold(float[] values, int start, int end, float threshold) {
+        int i = start;
+        for (int bound = loopBound(start, end); i < bound; i += SPECIES.length()) {
+            FloatVector vector = FloatVector.fromArray(SPECIES, values, i);
+            vector.blend(0f, vector.lt(threshold)).intoArray(values, i);
+        }
+        scalar.threshold(values, i, end, threshold);
+    }
+
+    @Override
+    public void sqrt(float[] values, int start, int end) {
+        int i = start;
+        for (int bound = loopBound(start, end); i < bound; i += SPECIES.length()) {
+            FloatVector.fromArray(SPECIES, values, i).lanewise(VectorOperators.SQRT).intoArray(values, i);
+        }
+        scalar.sqrt(values, i, end);
+    }
+
+    @Override
+    public float min(float[] values, int start, int end, float initial) {
+        int i = start;
+        int bound = loopBound(start, end);
+        float min = initial;
+        if (i < bound) {
+            FloatVector accumulator = FloatVector.broadcast(SPECIES, initial);
+            for (; i < bound; i += SPECIES.length()) {
+                accumulator = accumulator.min(FloatVector.fromArray(SPECIES, values, i));
+            }
+            min = accumulator.reduceLanes(VectorOperators.MIN);
+        }
+        return scalar.min(values, i, end, min);
+    }
+
+    @Override
+    public float max(float[] values, int start, int end, float initial) {
+        int i = start;
+        int bound = loopBound(start, end);
+        float max = initial;
+        if (i < bound) {
+            FloatVector accumulator = FloatVector.broadcast(SPECIES, initial);
+            for (; i < bound; i += SPECIES.length()) {
+                accumulator = accumulator.max(FloatVector.fromArray(SPECIES, values, i));
+            }
+            max = accumulator.reduceLanes(VectorOperators.MAX);
+        }
+        return scalar.max(values, i, end, max);
+    }
+
+    @Override
+    public String getName() {
+        return "vector " + SPECIES;
+    }
+
+    private static int loopBound(int start, int end) {
+        return start + SPECIES.loopBound(end - start);
+    }
+}